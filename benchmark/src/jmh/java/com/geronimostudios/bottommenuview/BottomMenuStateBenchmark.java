@@ -0,0 +1,81 @@
+package com.geronimostudios.bottommenuview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link BottomMenuState} updates made by {@link BottomMenuView}: a scroll frame
+ * and a page change, notified to the views sharing the state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BottomMenuStateBenchmark {
+
+    private static final int PAGE_COUNT = 5;
+
+    /**
+     * Number of precomputed scroll positions.
+     */
+    private static final int SAMPLE_COUNT = 1024;
+
+    @Param({"1", "2", "8"})
+    public int observerCount;
+
+    private final BottomMenuState mState = new BottomMenuState();
+
+    private float[] mScrollPositions;
+
+    private int mSample;
+
+    private int mNotificationCount;
+
+    @Setup
+    public void setUp() {
+        mState.setPageCount(PAGE_COUNT);
+        for (int i = 0; i < observerCount; ++i) {
+            mState.addObserver(new BottomMenuState.Observer() {
+                @Override
+                public void onMenuStateChanged(BottomMenuState state, int changes) {
+                    mNotificationCount += changes;
+                }
+            });
+        }
+        mScrollPositions = new float[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            mScrollPositions[i] = (PAGE_COUNT - 1) * i / (float) SAMPLE_COUNT;
+        }
+    }
+
+    private int nextSample() {
+        mSample = (mSample + 1) & (SAMPLE_COUNT - 1);
+        return mSample;
+    }
+
+    @Benchmark
+    public int scrollFrame() {
+        mState.setScrollPosition(mScrollPositions[nextSample()]);
+        return mNotificationCount;
+    }
+
+    /**
+     * A page change selecting the page and moving the scroll, notified once per observer.
+     */
+    @Benchmark
+    public int batchedPageChange() {
+        int page = nextSample() % PAGE_COUNT;
+        mState.beginBatch();
+        mState.selectPage(page);
+        mState.setScrollPosition(page, 0f);
+        mState.endBatch();
+        return mNotificationCount;
+    }
+}
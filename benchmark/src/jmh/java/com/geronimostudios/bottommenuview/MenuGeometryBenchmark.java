@@ -0,0 +1,109 @@
+package com.geronimostudios.bottommenuview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link MenuGeometry} work done by {@link BottomMenuView} on each frame:
+ * layout of the tabs, hit testing of a touch and interpolation of a scroll.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MenuGeometryBenchmark {
+
+    /**
+     * Width of a phone screen in pixel.
+     */
+    private static final int VIEW_WIDTH = 1080;
+
+    private static final float MIN_TAB_WIDTH = 144f;
+
+    private static final float ICON_SIZE = 72f;
+
+    private static final int PADDING_TOP = 24;
+
+    /**
+     * Number of precomputed touch positions and scroll offsets.
+     */
+    private static final int SAMPLE_COUNT = 1024;
+
+    @Param({"3", "5", "20", "100", "500"})
+    public int tabCount;
+
+    private final MenuGeometry mGeometry = new MenuGeometry();
+
+    private float[] mWeights;
+
+    private int[] mTouchX;
+
+    private float[] mScrollPositions;
+
+    private int mSample;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mWeights = new float[tabCount];
+        for (int i = 0; i < tabCount; ++i) {
+            mWeights[i] = 1f + random.nextInt(3) / 2f;
+        }
+        mGeometry.layout(mWeights, tabCount, VIEW_WIDTH, MIN_TAB_WIDTH);
+
+        int contentWidth = mGeometry.getTabRight(tabCount - 1);
+        mTouchX = new int[SAMPLE_COUNT];
+        mScrollPositions = new float[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; ++i) {
+            mTouchX[i] = random.nextInt(contentWidth);
+            mScrollPositions[i] = random.nextFloat() * (tabCount - 1);
+        }
+    }
+
+    private int nextSample() {
+        mSample = (mSample + 1) & (SAMPLE_COUNT - 1);
+        return mSample;
+    }
+
+    @Benchmark
+    public int layout() {
+        mGeometry.layout(mWeights, tabCount, VIEW_WIDTH, MIN_TAB_WIDTH);
+        return mGeometry.getMaxScroll();
+    }
+
+    @Benchmark
+    public int hitTest() {
+        return mGeometry.getTabIndexAt(mTouchX[nextSample()]);
+    }
+
+    /**
+     * Everything computed when the ViewPager scrolls by one frame.
+     */
+    @Benchmark
+    public void scrollFrame(Blackhole blackhole) {
+        float position = mScrollPositions[nextSample()];
+        int page = (int) position;
+        float offset = position - page;
+
+        int scrollX = mGeometry.getStripScroll(page, offset, VIEW_WIDTH);
+        int first = mGeometry.getFirstVisibleTab(scrollX);
+        int last = mGeometry.getLastVisibleTab(scrollX, VIEW_WIDTH);
+        blackhole.consume(mGeometry.getUnderlineCenterX(page, offset));
+        blackhole.consume(mGeometry.getUnderlineWidth(
+                MenuGeometry.LINE_FULL_WIDTH, ICON_SIZE * 2, page, offset));
+        for (int i = first; i <= last; ++i) {
+            blackhole.consume(mGeometry.getIconLeft(i, ICON_SIZE));
+            blackhole.consume(MenuGeometry.getIconOffsetY(
+                    i, page, offset, page + 1, page, PADDING_TOP));
+        }
+    }
+}
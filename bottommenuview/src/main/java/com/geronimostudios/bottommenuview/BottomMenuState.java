@@ -0,0 +1,236 @@
+package com.geronimostudios.bottommenuview;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selection and scroll position of a menu, observed by one or more {@link BottomMenuView}, see
+ * {@link BottomMenuView#setState(BottomMenuState)}. A phone bottom bar and a tablet rail can
+ * share a state, and a state kept outside of the views restores the selection of new views.
+ *
+ * <p>This class is plain Java, like {@link MenuGeometry}, and is not thread safe: it must be used
+ * from a single thread, the UI thread when it is observed by a view.
+ */
+public final class BottomMenuState {
+
+    /**
+     * The current page or the last page changed, see {@link Observer}.
+     */
+    public static final int CHANGED_SELECTION = 1;
+
+    /**
+     * The scroll position changed, see {@link Observer}.
+     */
+    public static final int CHANGED_SCROLL = 1 << 1;
+
+    /**
+     * The number of pages changed, see {@link Observer}.
+     */
+    public static final int CHANGED_PAGE_COUNT = 1 << 2;
+
+    /**
+     * Notified of the changes of a {@link BottomMenuState}.
+     */
+    public interface Observer {
+        /**
+         * Called after one or more changes of the state, once per batch, see
+         * {@link BottomMenuState#beginBatch()}.
+         *
+         * @param state the observed state
+         * @param changes a combination of the CHANGED_* flags
+         */
+        void onMenuStateChanged(BottomMenuState state, int changes);
+    }
+
+    private final List<Observer> mObservers = new ArrayList<>();
+
+    private int mPageCount;
+    private int mCurrentPage;
+    private int mLastPage;
+    private int mScrollPage;
+    private float mScrollOffset;
+
+    private int mBatchDepth;
+    private int mPendingChanges;
+
+    /**
+     * Observe the changes of the state. An observer is only added once.
+     *
+     * @param observer the observer to add
+     */
+    public void addObserver(Observer observer) {
+        if (!mObservers.contains(observer)) {
+            mObservers.add(observer);
+        }
+    }
+
+    public void removeObserver(Observer observer) {
+        mObservers.remove(observer);
+    }
+
+    public int getPageCount() {
+        return mPageCount;
+    }
+
+    /**
+     * Get the selected page.
+     *
+     * @return the selected page
+     */
+    public int getCurrentPage() {
+        return mCurrentPage;
+    }
+
+    /**
+     * Get the page selected before the current page.
+     *
+     * @return the last page
+     */
+    public int getLastPage() {
+        return mLastPage;
+    }
+
+    /**
+     * Get the page scrolled from, the scroll goes from this page to the next one.
+     *
+     * @return the page scrolled from
+     */
+    public int getScrollPage() {
+        return mScrollPage;
+    }
+
+    /**
+     * Get the percentage scrolled from {@link #getScrollPage()} to the next page.
+     *
+     * @return the scroll offset, from 0 to 1
+     */
+    public float getScrollOffset() {
+        return mScrollOffset;
+    }
+
+    /**
+     * Get the scroll position in pages, the scrolled page plus the offset.
+     *
+     * @return the scroll position
+     */
+    public float getScrollPosition() {
+        return mScrollPage + mScrollOffset;
+    }
+
+    /**
+     * Start a batch of changes: the observers are notified once, by the matching
+     * {@link #endBatch()}. Batches can be nested.
+     */
+    public void beginBatch() {
+        ++mBatchDepth;
+    }
+
+    /**
+     * End a batch started by {@link #beginBatch()} and notify the observers of its changes.
+     */
+    public void endBatch() {
+        if (mBatchDepth <= 0) {
+            throw new IllegalStateException("endBatch() without beginBatch()");
+        }
+        --mBatchDepth;
+        dispatchChanges();
+    }
+
+    /**
+     * Change the number of pages, the selection is not changed.
+     *
+     * @param pageCount the number of pages
+     */
+    public void setPageCount(int pageCount) {
+        if (pageCount != mPageCount) {
+            mPageCount = pageCount;
+            onChanged(CHANGED_PAGE_COUNT);
+        }
+    }
+
+    /**
+     * Select a page, the current page becomes the last page.
+     *
+     * @param page the new current page
+     */
+    public void selectPage(int page) {
+        setSelection(page, mCurrentPage);
+    }
+
+    /**
+     * Change the current page and the last page.
+     *
+     * @param currentPage the selected page
+     * @param lastPage the page selected before the current page
+     */
+    public void setSelection(int currentPage, int lastPage) {
+        if (currentPage != mCurrentPage || lastPage != mLastPage) {
+            mCurrentPage = currentPage;
+            mLastPage = lastPage;
+            onChanged(CHANGED_SELECTION);
+        }
+    }
+
+    /**
+     * Change the scroll position.
+     *
+     * @param page the page scrolled from
+     * @param offset the percentage scrolled from page to the next page
+     */
+    public void setScrollPosition(int page, float offset) {
+        if (page != mScrollPage || offset != mScrollOffset) {
+            mScrollPage = page;
+            mScrollOffset = offset;
+            onChanged(CHANGED_SCROLL);
+        }
+    }
+
+    /**
+     * Change the scroll position, split into a page and an offset.
+     *
+     * @param position the scroll position in pages
+     */
+    public void setScrollPosition(float position) {
+        int page = (int) Math.floor(position);
+        setScrollPosition(page, position - page);
+    }
+
+    /**
+     * Select a page without animation: it becomes the current, last and scrolled page.
+     *
+     * @param page the page to select
+     */
+    public void reset(int page) {
+        beginBatch();
+        setSelection(page, page);
+        setScrollPosition(page, 0f);
+        endBatch();
+    }
+
+    private void onChanged(int change) {
+        mPendingChanges |= change;
+        dispatchChanges();
+    }
+
+    private void dispatchChanges() {
+        if (mBatchDepth > 0) {
+            return;
+        }
+        // The changes made by the observers are notified in a following pass
+        ++mBatchDepth;
+        try {
+            while (mPendingChanges != 0) {
+                int changes = mPendingChanges;
+                mPendingChanges = 0;
+                // Backward, an observer can remove itself
+                for (int i = mObservers.size() - 1; i >= 0; --i) {
+                    if (i < mObservers.size()) {
+                        mObservers.get(i).onMenuStateChanged(this, changes);
+                    }
+                }
+            }
+        } finally {
+            --mBatchDepth;
+        }
+    }
+}
@@ -1,15 +1,26 @@
 package com.geronimostudios.bottommenuview;
 
-import android.animation.ObjectAnimator;
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.database.DataSetObserver;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
 import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
-import android.graphics.drawable.ShapeDrawable;
-import android.graphics.drawable.shapes.RectShape;
+import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.ColorInt;
 import android.support.annotation.Dimension;
 import android.support.annotation.DrawableRes;
@@ -18,57 +29,217 @@ import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
-import android.support.v4.content.ContextCompat;
 import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewPager;
+import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
+import android.util.Log;
+import android.util.SparseArray;
 import android.util.TypedValue;
+import android.view.Display;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewParent;
 import android.view.animation.DecelerateInterpolator;
+import android.widget.OverScroller;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class BottomMenuView extends View {
 
+    private static final String TAG = "BottomMenuView";
+
     /**
      * The width of the underline will be equals to the icon size * 2.
      */
-    public static final int LINE_AUTO = -1;
+    public static final int LINE_AUTO = MenuGeometry.LINE_AUTO;
 
     /**
      * The underline will have the same width than his parent {@link Tab}.
      */
-    public static final int LINE_FULL_WIDTH = -2;
+    public static final int LINE_FULL_WIDTH = MenuGeometry.LINE_FULL_WIDTH;
 
     /**
      * This mode is used when a custom width is specified.
      * See {@link #setUnderlineWidth(int)}.
      */
-    private static final int LINE_CUSTOM = -3;
+    private static final int LINE_CUSTOM = MenuGeometry.LINE_CUSTOM;
+
+    /**
+     * Maximum number of state sets kept for the tab backgrounds.
+     */
+    private static final int MAX_TAB_STATE_SETS = 8;
+
+    /**
+     * Default duration of the animation used by {@link #setCurrentPage(int)}.
+     */
+    private static final long DEFAULT_PAGE_ANIMATION_DURATION = 150;
+
+    /**
+     * Default parameters of the spring, see {@link #setPageAnimationSpringEnabled(boolean)}.
+     * The spring settles in about 300 ms with a slight overshoot.
+     */
+    private static final float DEFAULT_SPRING_STIFFNESS = 400f;
+    private static final float DEFAULT_SPRING_DAMPING_RATIO = 0.75f;
+
+    /**
+     * Age in milliseconds after which the velocity of the ViewPager scroll or of the scrub is
+     * ignored when the spring starts.
+     */
+    private static final long SCROLL_VELOCITY_TIMEOUT = 100;
+
+    /**
+     * Time in seconds over which the velocity of a fling is projected to pick the page it
+     * settles on, see {@link #setScrubEnabled(boolean)}.
+     */
+    private static final float FLING_PROJECTION = 0.2f;
+
+    /**
+     * Maximum width in pixel of the icon atlas, see {@link #setIconAtlasEnabled(boolean)}.
+     */
+    private static final int MAX_ICON_ATLAS_WIDTH = 2048;
+
+    /**
+     * Time during which a tab whose background invalidated itself is drawn outside of the static
+     * layer, long enough for a ripple to finish. See {@link #setStaticLayerEnabled(boolean)}.
+     */
+    private static final long STATIC_LAYER_SETTLE_DELAY = 1000;
+
+    /**
+     * Part of the view width drawn in the static layer on each side of the visible part, when
+     * the menu scrolls. The layer is only redrawn once the scroll leaves this margin.
+     */
+    private static final float STATIC_LAYER_SCROLL_MARGIN = 0.5f;
 
     @IntDef({LINE_AUTO, LINE_FULL_WIDTH, LINE_CUSTOM})
     @Retention(RetentionPolicy.SOURCE)
     public @interface LineMode {
     }
 
+    /**
+     * The icons are loaded when the tabs are created.
+     */
+    public static final int ICON_LOADING_EAGER = 0;
+
+    /**
+     * The icons are loaded on the UI thread the first time they are drawn.
+     */
+    public static final int ICON_LOADING_LAZY = 1;
+
+    /**
+     * The icons are loaded on a background thread, the placeholder is drawn meanwhile.
+     * See {@link #setIconPlaceholder(Drawable)}.
+     */
+    public static final int ICON_LOADING_ASYNC = 2;
+
+    @IntDef({ICON_LOADING_EAGER, ICON_LOADING_LAZY, ICON_LOADING_ASYNC})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface IconLoading {
+    }
+
+    /**
+     * No badge is drawn on the tab. See {@link #setBadge(int, int)}.
+     */
+    public static final int BADGE_NONE = 0;
+
+    /**
+     * A dot without count is drawn on the tab. See {@link #setBadge(int, int)}.
+     */
+    public static final int BADGE_DOT = -1;
+
+    /**
+     * Highest count written in a badge, higher counts are written "99+".
+     */
+    private static final int MAX_BADGE_COUNT = 99;
+
+    private static final int DEFAULT_BADGE_COLOR = 0xFFF44336;
+
+    private static final int DEFAULT_LABEL_COLOR = 0x8A000000;
+
     private List<Tab> mTabs;
-    private Drawable mUnderlineDrawable;
+    private IndicatorRenderer mIndicatorRenderer;
+    private @ColorInt int mUnderlineColor;
+
+    /**
+     * Bounds of the indicator on the scrolled page and on the next page.
+     */
+    private final RectF mIndicatorFrom = new RectF();
+    private final RectF mIndicatorTo = new RectF();
     private @Nullable ViewPager mViewPager;
     private float mItemSize;
     private float mUnderlineHeight;
     private float mUnderlineWidth;
     private @LineMode int mUnderlineMode;
+
+    /**
+     * Selection and scroll position, shared by the views observing the same state.
+     * See {@link #setState(BottomMenuState)}.
+     */
+    private BottomMenuState mState = new BottomMenuState();
+
+    /**
+     * True while {@link #mStateObserver} is registered, from attach to detach, so a shared state
+     * does not hold the detached views.
+     */
+    private boolean mStateObserved;
+
+    private final BottomMenuState.Observer mStateObserver = new BottomMenuState.Observer() {
+        @Override
+        public void onMenuStateChanged(BottomMenuState state, int changes) {
+            if ((changes & (BottomMenuState.CHANGED_SELECTION
+                    | BottomMenuState.CHANGED_SCROLL)) != 0) {
+                if (!mStripPanning) {
+                    // The strip follows the underline again
+                    mStripPanned = false;
+                    mStripScroller.abortAnimation();
+                }
+                applyState();
+            }
+        }
+    };
+
+    /**
+     * Copy of the selection of {@link #mState} currently drawn, see {@link #applyState()}.
+     */
     private int mCurrentPage;
     private int mLastPage;
     private float mLastTouchX;
     private Listener mListener;
+    private @Nullable OnScrollProgressListener mScrollProgressListener;
+    private @Nullable OnPageAboutToChangeListener mPageAboutToChangeListener;
+
+    /**
+     * Page of the tab under the finger or the pointer, -1 if none.
+     * See {@link #setOnPageAboutToChangeListener(OnPageAboutToChangeListener)}.
+     */
+    private int mPageAboutToChange = -1;
+
+    /**
+     * True to animate the underline when a tab edit removes the current tab.
+     * See {@link #setTabChangesAnimated(boolean)}.
+     */
+    private boolean mTabChangesAnimated;
 
     /**
-     * Current page of positionOffset.
+     * Position given to {@link #mScrollProgressListener} on the last dispatch.
+     */
+    private float mDispatchedScrollPosition = Float.NaN;
+
+    /**
+     * True while {@link #mScrollProgressRunnable} is posted for the next frame.
+     */
+    private boolean mScrollProgressPending;
+
+    /**
+     * Current page of positionOffset, copied from {@link #mState} like {@link #mCurrentPage}.
      */
     private int mScrollCurrentPage;
 
@@ -78,6 +249,329 @@ public class BottomMenuView extends View {
     private @FloatRange(from = 0f, to = 1f) float mScrollPageOffset;
     private @Nullable Drawable mDefaultTabBackground;
 
+    /**
+     * True when the cached geometry below has to be rebuilt before the next draw.
+     */
+    private boolean mGeometryDirty = true;
+
+    /**
+     * Bounds of the background of each {@link Tab}.
+     */
+    private Rect[] mTabBounds = new Rect[0];
+
+    /**
+     * Resting bounds of the icon of each {@link Tab}.
+     */
+    private Rect[] mIconBounds = new Rect[0];
+
+    /**
+     * Edges of the tabs and positions of the underline, see {@link Tab#setWeight(float)}.
+     */
+    private final MenuGeometry mGeometry = new MenuGeometry();
+
+    /**
+     * Weight of each {@link Tab}, reused between two layouts.
+     */
+    private float[] mTabWeights = new float[0];
+
+    /**
+     * Minimum width of a {@link Tab}, the menu scrolls when the tabs do not fit.
+     * See {@link #setMinTabWidth(int)}.
+     */
+    private float mMinTabWidth;
+
+    /**
+     * Range of the tabs in the visible part of the menu. Only these tabs are drawn, hit tested
+     * and have their background registered to this view.
+     */
+    private int mFirstVisibleTab;
+    private int mLastVisibleTab = -1;
+
+    /**
+     * Region of the view touched by the scroll update in progress.
+     * See {@link #beginScrollUpdate()} and {@link #endScrollUpdate()}.
+     */
+    private final Rect mDirtyRect = new Rect();
+
+    /**
+     * State sets of the tab backgrounds, see {@link #obtainTabStateSet(int[], boolean)}.
+     */
+    private final List<int[]> mTabStateSets = new ArrayList<>();
+
+    /**
+     * Animator used by {@link #setCurrentPage(int)}, reused and retargeted on each call.
+     */
+    private ValueAnimator mPageAnimator;
+    private TimeInterpolator mPageInterpolator;
+    private float mPageAnimationFrom;
+    private float mPageAnimationTo;
+
+    /**
+     * Spring used instead of {@link #mPageAnimator} when enabled, see
+     * {@link #setPageAnimationSpring(float, float)}. Stepped on each frame by
+     * {@link #mPageSpringRunnable} and retargeted, keeping its velocity, on each new page.
+     */
+    private @Nullable MenuSpring mPageSpring;
+    private boolean mPageSpringRunning;
+    private long mPageSpringFrameTime;
+
+    /**
+     * Last scroll position given by the ViewPager or by a scrub and its velocity in pages per
+     * second, which the spring starts with when it takes over.
+     */
+    private float mTrackedScrollPosition;
+    private float mTrackedScrollVelocity;
+    private long mTrackedScrollTime;
+
+    /**
+     * State of the scrub gesture, see {@link #setScrubEnabled(boolean)}.
+     * The velocity tracker and the state are reused by every gesture.
+     */
+    private boolean mScrubEnabled;
+    private boolean mScrubbing;
+    private float mScrubDownX;
+    private float mScrubLastX;
+    private float mScrubPosition;
+    private @Nullable VelocityTracker mVelocityTracker;
+
+    /**
+     * State of the pan gesture, which scrolls a scrollable menu without changing the selection.
+     * The strip is panned until the next change of the selection or of the scroll position,
+     * then it follows the underline again. The velocity tracker is shared with the scrub.
+     */
+    private OverScroller mStripScroller;
+    private boolean mStripPanning;
+    private boolean mStripPanned;
+    private float mStripDownX;
+    private float mStripLastX;
+
+    private int mTouchSlop;
+    private int mMinFlingVelocity;
+    private int mMaxFlingVelocity;
+
+    /**
+     * Performance metrics, see {@link #setMetricsListener(MetricsListener)}.
+     */
+    private final MenuMetrics mMetrics = new MenuMetrics();
+
+    /**
+     * Bitmap holding every icon rasterized at the icon size, see
+     * {@link #setIconAtlasEnabled(boolean)}.
+     */
+    private boolean mIconAtlasEnabled;
+    private boolean mIconAtlasDirty = true;
+    private @Nullable Bitmap mIconAtlas;
+    private @Nullable Canvas mIconAtlasCanvas;
+    private Rect[] mIconAtlasBounds = new Rect[0];
+    private final Paint mIconAtlasPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private @IconLoading int mIconLoading = ICON_LOADING_EAGER;
+    private @Nullable Drawable mIconPlaceholder;
+
+    /**
+     * Incremented on each setup so that icons loaded for previous tabs are ignored.
+     */
+    private int mIconLoadGeneration;
+
+    /**
+     * Posts the icons loaded in background. {@link View#post(Runnable)} is not used: before
+     * API 24, a detached view posts to a queue of the calling thread which never runs.
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Bitmap holding the backgrounds and icons of the tabs which do not move,
+     * see {@link #setStaticLayerEnabled(boolean)}.
+     */
+    private boolean mStaticLayerEnabled;
+    private boolean mStaticLayerDirty = true;
+    private @Nullable Bitmap mStaticLayer;
+    private @Nullable Canvas mStaticLayerCanvas;
+    private final Paint mStaticLayerPaint = new Paint();
+
+    private final Paint mBadgePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint mBadgeTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint.FontMetrics mBadgeFontMetrics = new Paint.FontMetrics();
+
+    /**
+     * Offset from the vertical center of a badge to the baseline of its text.
+     */
+    private float mBadgeTextOffsetY;
+
+    /**
+     * Text and width of each count drawn in a badge, measured once for the current text size.
+     */
+    private final SparseArray<BadgeText> mBadgeTexts = new SparseArray<>();
+    private final RectF mBadgeRect = new RectF();
+    private final Rect mBadgeBounds = new Rect();
+    private final Rect mBadgeDirtyRect = new Rect();
+
+    /**
+     * True if at least one {@link Tab} has a label, the labels are drawn under the icons.
+     */
+    private boolean mHasLabels;
+    private final TextPaint mLabelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint.FontMetrics mLabelFontMetrics = new Paint.FontMetrics();
+    private @ColorInt int mLabelColor;
+    private @ColorInt int mLabelSelectedColor;
+    private float mLabelSpacing;
+
+    /**
+     * Labels of the tabs ellipsized to the width of their tab, and baseline of the labels.
+     */
+    private CharSequence[] mTabLabels = new CharSequence[0];
+    private float mLabelBaseline;
+
+    /**
+     * Left of the static layer in the content of the menu, and scrolled page when the layer was
+     * drawn.
+     */
+    private int mStaticLayerLeft;
+    private int mStaticLayerScrollPage;
+
+    /**
+     * True for the tabs drawn in the static layer.
+     */
+    private boolean[] mTabInStaticLayer = new boolean[0];
+
+    /**
+     * Time until which the background of each tab is considered as animated.
+     */
+    private long[] mTabAnimatedUntil = new long[0];
+
+    /**
+     * State set of the backgrounds of the tabs which are not touched.
+     */
+    private @Nullable int[] mIdleTabStateSet;
+
+    /**
+     * True while {@link #mStaticLayerSettleRunnable} is posted.
+     */
+    private boolean mStaticLayerSettlePending;
+
+    private final Runnable mStaticLayerSettleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mStaticLayerSettlePending = false;
+            // Wait for the last tab animated since this runnable has been posted
+            long settleTime = 0;
+            for (long animatedUntil : mTabAnimatedUntil) {
+                settleTime = Math.max(settleTime, animatedUntil);
+            }
+            long delay = settleTime - SystemClock.uptimeMillis();
+            if (delay > 0) {
+                mStaticLayerSettlePending = true;
+                postDelayed(this, delay);
+                return;
+            }
+            // Put the tabs which stopped animating back in the static layer
+            mStaticLayerDirty = true;
+            invalidate();
+        }
+    };
+
+    private final Runnable mScrollProgressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mScrollProgressPending = false;
+            float position = mScrollCurrentPage + mScrollPageOffset;
+            if (mScrollProgressListener != null && position != mDispatchedScrollPosition) {
+                mDispatchedScrollPosition = position;
+                mScrollProgressListener.onMenuScrolled(position);
+            }
+        }
+    };
+
+    private ValueAnimator.AnimatorUpdateListener mPageAnimatorUpdateListener
+            = new ValueAnimator.AnimatorUpdateListener() {
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float fraction;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
+                fraction = animation.getAnimatedFraction();
+            } else {
+                long duration = animation.getDuration();
+                fraction = duration <= 0
+                        ? 1f
+                        : Math.min(1f, animation.getCurrentPlayTime() / (float) duration);
+                fraction = mPageInterpolator.getInterpolation(fraction);
+            }
+            mMetrics.onAnimationFrame();
+            setInternalPageScrolled(
+                    mPageAnimationFrom + (mPageAnimationTo - mPageAnimationFrom) * fraction
+            );
+        }
+    };
+
+    private final Runnable mPageSpringRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mPageSpringRunning || mPageSpring == null) {
+                return;
+            }
+            long now = System.nanoTime();
+            final boolean atRest = mPageSpring.step((now - mPageSpringFrameTime) / 1e9);
+            mPageSpringFrameTime = now;
+            mMetrics.onAnimationFrame();
+            setInternalPageScrolled(clampPage(mPageSpring.getPosition()));
+            if (atRest) {
+                mPageSpringRunning = false;
+                mMetrics.onAnimationEnd();
+            } else {
+                ViewCompat.postOnAnimation(BottomMenuView.this, this);
+            }
+        }
+    };
+
+    private final Animator.AnimatorListener mPageAnimatorListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationStart(Animator animation) {
+            if (mMetrics.isListening()) {
+                mMetrics.onAnimationStart(getFrameIntervalNanos());
+            }
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            // Also called after a cancel
+            mMetrics.onAnimationEnd();
+        }
+    };
+
+    /**
+     * Adapter of {@link #mViewPager} whose changes are observed.
+     */
+    private @Nullable PagerAdapter mObservedAdapter;
+
+    private final DataSetObserver mAdapterObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            updateTabsFromAdapter();
+        }
+
+        @Override
+        public void onInvalidated() {
+            updateTabsFromAdapter();
+        }
+    };
+
+    private final ViewPager.OnAdapterChangeListener mAdapterChangeListener
+            = new ViewPager.OnAdapterChangeListener() {
+        @Override
+        public void onAdapterChanged(@NonNull ViewPager viewPager,
+                                     @Nullable PagerAdapter oldAdapter,
+                                     @Nullable PagerAdapter newAdapter) {
+            // Called from ViewPager.setAdapter(), which must not fail because of the menu
+            if (newAdapter != null && !(newAdapter instanceof Adapter)) {
+                Log.w(TAG, "The new adapter of the ViewPager does not implement "
+                        + "BottomMenuView.Adapter, the menu is cleared");
+                newAdapter = null;
+            }
+            observeAdapter(newAdapter);
+            updateTabsFromAdapter();
+        }
+    };
+
     private ViewPager.OnPageChangeListener mViewPagerPageChangeListener
             = new ViewPager.OnPageChangeListener() {
         /**
@@ -92,13 +586,16 @@ public class BottomMenuView extends View {
         public void onPageScrolled(int page,
                                    @FloatRange(from = 0f, to = 1f) float positionOffset,
                                    int positionOffsetPixels) {
-            mScrollCurrentPage = page;
-            mScrollPageOffset = positionOffset;
-            invalidate();
+            // A drag or a scroll of the ViewPager takes over a running spring
+            stopPageSpring();
+            beginViewPagerBatch();
+            trackScroll(page + positionOffset);
+            mState.setScrollPosition(page, positionOffset);
         }
 
         @Override
         public void onPageSelected(int position) {
+            beginViewPagerBatch();
             internalChangePage(position);
         }
 
@@ -108,6 +605,19 @@ public class BottomMenuView extends View {
         }
     };
 
+    /**
+     * True while a batch of {@link #mState} is open for the callbacks of the ViewPager, until
+     * {@link #mViewPagerBatchRunnable} ends it on the next animation frame.
+     */
+    private boolean mViewPagerBatchOpen;
+
+    private final Runnable mViewPagerBatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            endViewPagerBatch();
+        }
+    };
+
     public BottomMenuView(Context context) {
         super(context);
         init(context, null);
@@ -130,19 +640,40 @@ public class BottomMenuView extends View {
     }
 
     private void init(Context context, AttributeSet attrs) {
-        mUnderlineDrawable = new ShapeDrawable(new RectShape());
+        mIndicatorRenderer = new IndicatorRenderer.Bar();
         @ColorInt int lineColor = -1;
+        @ColorInt int badgeColor = DEFAULT_BADGE_COLOR;
+        @ColorInt int badgeTextColor = Color.WHITE;
+        // Any color is valid, white included: the underline color is used only when unset
+        boolean hasLabelSelectedColor = false;
+        @ColorInt int labelSelectedColor = 0;
+        float labelTextSize = -1;
+        mLabelColor = DEFAULT_LABEL_COLOR;
         mUnderlineHeight = -1;
         mItemSize = -1;
         mUnderlineMode = LINE_AUTO;
         mDefaultTabBackground = null;
 
+        mPageInterpolator = new DecelerateInterpolator();
+        mPageAnimator = ValueAnimator.ofFloat(0f, 1f);
+        mPageAnimator.setDuration(DEFAULT_PAGE_ANIMATION_DURATION);
+        mPageAnimator.setInterpolator(mPageInterpolator);
+        mPageAnimator.addUpdateListener(mPageAnimatorUpdateListener);
+        mPageAnimator.addListener(mPageAnimatorListener);
+
         if (attrs != null) {
             TypedArray a = getContext().obtainStyledAttributes(attrs, R.styleable.BottomMenuView);
             lineColor = a.getColor(R.styleable.BottomMenuView_tabLineColor, -1);
             mUnderlineHeight = a.getDimension(R.styleable.BottomMenuView_tabLineHeight, -1);
             mItemSize = a.getDimension(R.styleable.BottomMenuView_tabIconSize, -1);
             mDefaultTabBackground = a.getDrawable(R.styleable.BottomMenuView_tabBackground);
+            mMinTabWidth = a.getDimension(R.styleable.BottomMenuView_tabMinWidth, 0f);
+            badgeColor = a.getColor(R.styleable.BottomMenuView_tabBadgeColor, DEFAULT_BADGE_COLOR);
+            badgeTextColor = a.getColor(R.styleable.BottomMenuView_tabBadgeTextColor, Color.WHITE);
+            labelTextSize = a.getDimension(R.styleable.BottomMenuView_tabLabelTextSize, -1);
+            mLabelColor = a.getColor(R.styleable.BottomMenuView_tabLabelColor, DEFAULT_LABEL_COLOR);
+            hasLabelSelectedColor = a.hasValue(R.styleable.BottomMenuView_tabLabelSelectedColor);
+            labelSelectedColor = a.getColor(R.styleable.BottomMenuView_tabLabelSelectedColor, 0);
 
             TypedValue tv = new TypedValue();
             a.getValue(R.styleable.BottomMenuView_tabLineWidth, tv);
@@ -185,9 +716,29 @@ public class BottomMenuView extends View {
             lineColor = value.data;
         }
 
-        mUnderlineDrawable.setColorFilter(lineColor, PorterDuff.Mode.SRC);
+        if (labelTextSize == -1) {
+            labelTextSize = res.getDimension(R.dimen.bottommenuview_default_label_text_size);
+        }
+        mLabelSpacing = res.getDimension(R.dimen.bottommenuview_default_label_spacing);
+        mLabelSelectedColor = hasLabelSelectedColor ? labelSelectedColor : lineColor;
+
+        mUnderlineColor = lineColor;
+        mIndicatorRenderer.setColor(lineColor);
+        mBadgePaint.setColor(badgeColor);
+        mBadgeTextPaint.setColor(badgeTextColor);
+        mBadgeTextPaint.setTextAlign(Paint.Align.CENTER);
+        mLabelPaint.setTextAlign(Paint.Align.CENTER);
+        mLabelPaint.setTextSize(labelTextSize);
+        mLabelPaint.getFontMetrics(mLabelFontMetrics);
+        updateUnderlineWidth();
         setClickable(true);
 
+        ViewConfiguration configuration = ViewConfiguration.get(getContext());
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mMinFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+        mStripScroller = new OverScroller(getContext());
+
         if (isInEditMode()) {
             fillWithFakeData();
         }
@@ -205,7 +756,9 @@ public class BottomMenuView extends View {
             throw new IllegalArgumentException("Invalid mode");
         }
         mUnderlineMode = mode;
-        requestLayout();
+        // Only the geometry depends on the underline, not the size of the view
+        updateUnderlineWidth();
+        invalidateGeometry();
     }
 
     /**
@@ -216,7 +769,7 @@ public class BottomMenuView extends View {
     public void setUnderlineWidth(@Dimension int width) {
         mUnderlineMode = LINE_CUSTOM;
         mUnderlineWidth = width;
-        invalidate();
+        invalidateGeometry();
     }
 
     /**
@@ -225,100 +778,571 @@ public class BottomMenuView extends View {
      * @param color a rgb color.
      */
     public void setUnderlineColor(@ColorInt int color) {
-        mUnderlineDrawable.setColorFilter(color, PorterDuff.Mode.SRC);
+        mUnderlineColor = color;
+        mIndicatorRenderer.setColor(color);
         invalidate();
     }
 
     /**
-     * Change the height of the underline.
+     * Change how the underline is drawn, a flat {@link IndicatorRenderer.Bar} by default.
+     * The renderer gets the color of the underline, see {@link #setUnderlineColor(int)}.
      *
-     * @param dimension the new height of the underline in pixel.
+     * @param renderer the renderer of the underline.
      */
-    public void setUnderlineHeight(@Dimension int dimension) {
-        mUnderlineHeight = dimension;
+    public void setIndicatorRenderer(@NonNull IndicatorRenderer renderer) {
+        mIndicatorRenderer = renderer;
+        mIndicatorRenderer.setColor(mUnderlineColor);
         invalidate();
     }
 
     /**
-     * Change the size of the icon of each {@link Tab}.
+     * Change the color of the badges.
      *
-     * @param dimension the new size in pixel.
+     * @param color the color, red by default
      */
-    public void setIconSize(@Dimension int dimension) {
-        mItemSize = dimension;
+    public void setBadgeColor(@ColorInt int color) {
+        mBadgePaint.setColor(color);
+        mStaticLayerDirty = true;
         invalidate();
     }
 
     /**
-     * Change the background drawable of each {@link Tab}.
-     * The {@link android.graphics.drawable.RippleDrawable} are supported by this view.
+     * Change the color of the counts written in the badges.
      *
-     * @param tabBackground a drawable or null.
+     * @param color the color, white by default
      */
-    public void setTabBackground(@Nullable Drawable tabBackground) {
-        unregisterDrawableCallback();
-        mDefaultTabBackground = tabBackground;
-        if (mTabs != null) {
-            for (Tab tab : mTabs) {
-                tab.mDrawable = getCopyOfDefaultTabBackground();
-            }
-            invalidate();
-        }
+    public void setBadgeTextColor(@ColorInt int color) {
+        mBadgeTextPaint.setColor(color);
+        mStaticLayerDirty = true;
+        invalidate();
     }
 
-    @Override
-    protected void drawableStateChanged() {
-        int[] stateSet = getDrawableState();
-        if (mTabs != null) {
-            int widthPerItem = getWidth() / mTabs.size();
-            int index = (int) (mLastTouchX / widthPerItem);
-            for (int tabIndex = 0; tabIndex < mTabs.size(); ++tabIndex) {
-                Tab tab = mTabs.get(tabIndex);
-                Drawable drawable = tab.getBackgroundDrawable();
-                if (drawable != null && drawable.isStateful()) {
-                    int[] newState;
-                    if (index == tabIndex) { // set current tab selected
-                        newState = new int[stateSet.length + 1];
-                        System.arraycopy(stateSet, 0, newState, 0, stateSet.length);
-                        newState[stateSet.length] = android.R.attr.state_selected;
-                    } else { // remove selected and pressed state
-                        newState = new int[stateSet.length];
-                        System.arraycopy(stateSet, 0, newState, 0, stateSet.length);
-                        for (int i = 0; i < newState.length; ++i) {
-                            int state = newState[i];
-                            if (state == android.R.attr.state_selected
-                                    || state == android.R.attr.state_pressed) {
-                                newState[i] = 0;
-                            }
-                        }
-                    }
-                    drawable.setState(newState);
-                    invalidate();
-                }
-            }
+    /**
+     * Change the size of the labels.
+     *
+     * @param size the new text size in pixel.
+     */
+    public void setLabelTextSize(@Dimension int size) {
+        mLabelPaint.setTextSize(size);
+        mLabelPaint.getFontMetrics(mLabelFontMetrics);
+        if (mHasLabels) {
+            updateMeasuredSize();
+        }
+        invalidateGeometry();
+    }
+
+    /**
+     * Change the colors of the labels. The color of a label goes from one to the other as the
+     * menu scrolls to its tab.
+     *
+     * @param color the color of the labels
+     * @param selectedColor the color of the label of the current tab, the underline color by
+     *                      default
+     */
+    public void setLabelColors(@ColorInt int color, @ColorInt int selectedColor) {
+        mLabelColor = color;
+        mLabelSelectedColor = selectedColor;
+        mStaticLayerDirty = true;
+        invalidate();
+    }
+
+    /**
+     * Change the label drawn under the icon of a {@link Tab}.
+     *
+     * @param page the page of the tab
+     * @param label a label or null to remove it
+     */
+    public void setLabel(int page, @Nullable CharSequence label) {
+        if (mTabs == null || page < 0 || page >= mTabs.size()) {
+            throw new IndexOutOfBoundsException("Invalid page");
+        }
+        mTabs.get(page).mLabel = label;
+        if (updateHasLabels()) {
+            updateMeasuredSize();
+            invalidateGeometry();
+        } else if (!mGeometryDirty) {
+            // Only this label has to be ellipsized again
+            updateLabel(page);
+            mStaticLayerDirty = true;
+            invalidateTab(page);
+        }
+    }
+
+    /**
+     * Update whether at least one tab has a label.
+     *
+     * @return true if the labels appeared or disappeared, which changes the height of the view
+     */
+    private boolean updateHasLabels() {
+        boolean hasLabels = false;
+        if (mTabs != null) {
+            for (int i = 0; i < mTabs.size() && !hasLabels; ++i) {
+                hasLabels = mTabs.get(i).getLabel() != null;
+            }
+        }
+        if (hasLabels == mHasLabels) {
+            return false;
+        }
+        mHasLabels = hasLabels;
+        return true;
+    }
+
+    private void updateLabel(int index) {
+        CharSequence label = mTabs.get(index).getLabel();
+        mTabLabels[index] = label == null
+                ? null
+                : TextUtils.ellipsize(label, mLabelPaint, mTabBounds[index].width(),
+                        TextUtils.TruncateAt.END);
+    }
+
+    /**
+     * Change the badge drawn over the icon of a {@link Tab}.
+     *
+     * @param page the page of the tab
+     * @param badge a count, {@link #BADGE_DOT} or {@link #BADGE_NONE}
+     */
+    public void setBadge(int page, int badge) {
+        if (mTabs == null || page < 0 || page >= mTabs.size()) {
+            throw new IndexOutOfBoundsException("Invalid page");
+        }
+        mBadgeDirtyRect.setEmpty();
+        updateBadge(page, badge);
+        invalidateBadges();
+    }
+
+    /**
+     * Change the badges of every {@link Tab} at once, the changed badges are redrawn in a single
+     * pass.
+     *
+     * @param badges a count, {@link #BADGE_DOT} or {@link #BADGE_NONE} for each page
+     */
+    public void setBadges(@NonNull int[] badges) {
+        int itemCount = mTabs == null ? 0 : mTabs.size();
+        if (badges.length != itemCount) {
+            throw new IllegalArgumentException("Invalid number of badges");
+        }
+        mBadgeDirtyRect.setEmpty();
+        for (int i = 0; i < itemCount; ++i) {
+            updateBadge(i, badges[i]);
+        }
+        invalidateBadges();
+    }
+
+    /**
+     * Get the badge of a tab.
+     *
+     * @param page the page of a {@link Tab}
+     * @return the badge of the tab, see {@link #setBadge(int, int)}
+     */
+    public int getBadge(int page) {
+        return mTabs.get(page).getBadge();
+    }
+
+    /**
+     * Change the badge of a {@link Tab} and add its old and new bounds to
+     * {@link #mBadgeDirtyRect}.
+     */
+    private void updateBadge(int index, int badge) {
+        if (badge < BADGE_DOT) {
+            throw new IllegalArgumentException("Invalid badge");
+        }
+        Tab tab = mTabs.get(index);
+        if (tab.mBadge == badge) {
+            return;
+        }
+        unionBadgeBounds(mBadgeDirtyRect, index, 0);
+        tab.mBadge = badge;
+        unionBadgeBounds(mBadgeDirtyRect, index, 0);
+        mStaticLayerDirty = true;
+    }
+
+    private void invalidateBadges() {
+        if (mGeometryDirty) {
+            invalidate();
+        } else if (!mBadgeDirtyRect.isEmpty()) {
+            // The badge of a moving icon can be anywhere up to the lift of the icon
+            mBadgeDirtyRect.top -= (int) Math.ceil(getPaddingTop() / 4f);
+            invalidate(mBadgeDirtyRect);
+        }
+    }
+
+    /**
+     * Change the height of the underline.
+     *
+     * @param dimension the new height of the underline in pixel.
+     */
+    public void setUnderlineHeight(@Dimension int dimension) {
+        mUnderlineHeight = dimension;
+        invalidateGeometry();
+    }
+
+    /**
+     * Change the size of the icon of each {@link Tab}.
+     *
+     * @param dimension the new size in pixel.
+     */
+    public void setIconSize(@Dimension int dimension) {
+        mItemSize = dimension;
+        mIconAtlasDirty = true;
+        updateUnderlineWidth();
+        updateMeasuredSize();
+        invalidateGeometry();
+    }
+
+    /**
+     * Draw the icons from a single bitmap in which every icon is rasterized once.
+     * This avoids drawing each icon drawable on every frame, which is useful with vector icons.
+     * The bitmap is rebuilt when the icon size or the tabs change.
+     *
+     * @param enabled true to draw the icons from the atlas, false by default
+     */
+    public void setIconAtlasEnabled(boolean enabled) {
+        if (mIconAtlasEnabled == enabled) {
+            return;
+        }
+        mIconAtlasEnabled = enabled;
+        releaseIconAtlas();
+        invalidateGeometry();
+    }
+
+    /**
+     * Change the minimum width of each {@link Tab}.
+     * When the tabs do not fit in the view with this width, the menu becomes scrollable and
+     * follows the underline. It can also be dragged and flung, without changing the selection,
+     * unless the scrub is enabled. Only the visible tabs are drawn.
+     *
+     * @param width a dimension in pixel, 0 to always fit the tabs in the view.
+     */
+    public void setMinTabWidth(@Dimension int width) {
+        mMinTabWidth = width;
+        invalidateGeometry();
+    }
+
+    /**
+     * Change the duration of the animation used by {@link #setCurrentPage(int)}.
+     * Not used by the spring, see {@link #setPageAnimationSpringEnabled(boolean)}.
+     *
+     * @param duration the duration in milliseconds
+     */
+    public void setPageAnimationDuration(long duration) {
+        mPageAnimator.setDuration(duration);
+    }
+
+    /**
+     * Change the interpolator of the animation used by {@link #setCurrentPage(int)}.
+     *
+     * @param interpolator the interpolator, a {@link DecelerateInterpolator} by default
+     */
+    public void setPageAnimationInterpolator(@NonNull TimeInterpolator interpolator) {
+        mPageInterpolator = interpolator;
+        mPageAnimator.setInterpolator(interpolator);
+    }
+
+    /**
+     * Animate the page changes of {@link #setCurrentPage(int)} with a spring instead of the
+     * fixed duration animation. A new page selected during the animation retargets the spring,
+     * which keeps its velocity, and the spring starts with the velocity of the ViewPager when
+     * it takes over a scroll. The motion is the same at any refresh rate.
+     *
+     * @param enabled true to use a spring with the default stiffness and damping ratio
+     */
+    public void setPageAnimationSpringEnabled(boolean enabled) {
+        if (enabled) {
+            setPageAnimationSpring(DEFAULT_SPRING_STIFFNESS, DEFAULT_SPRING_DAMPING_RATIO);
+        } else if (mPageSpring != null) {
+            cancelPageAnimation();
+            mPageSpring = null;
+        }
+    }
+
+    /**
+     * Animate the page changes with a spring, see {@link #setPageAnimationSpringEnabled(boolean)}.
+     *
+     * @param stiffness the stiffness of the spring, the higher the faster, 400 by default
+     * @param dampingRatio 1 to stop without overshoot, below 1 to bounce, 0.75 by default
+     */
+    public void setPageAnimationSpring(float stiffness, float dampingRatio) {
+        if (mPageSpring == null) {
+            cancelPageAnimation();
+            mPageSpring = new MenuSpring(stiffness, dampingRatio);
+        } else {
+            mPageSpring.setParameters(stiffness, dampingRatio);
+        }
+    }
+
+    /**
+     * Scrub the selection by dragging a finger along the menu, the ViewPager following through
+     * a fake drag. On release, the menu settles on the nearest page, or further in the direction
+     * of a fling. A tap still selects the tab under the finger. When enabled, a scrollable menu
+     * cannot be panned anymore: the drag moves the selection, which the menu follows.
+     *
+     * @param enabled true to enable the scrub, false by default
+     */
+    public void setScrubEnabled(boolean enabled) {
+        if (!enabled) {
+            cancelScrub();
+        }
+        mScrubEnabled = enabled;
+    }
+
+    /**
+     * Draw the tabs which do not move into a bitmap, drawn at once on each frame.
+     * Only the underline, the icons moved by the scroll and the tabs whose background is
+     * animated are drawn separately, so the cost of a frame does not depend on the number of
+     * tabs. The bitmap is redrawn when the tabs, the sizes or the drawable states change.
+     * When the menu scrolls, the bitmap also covers half a view on each side of the visible
+     * part: it is only redrawn once the scroll goes past this margin, or when the underline
+     * reaches another tab.
+     *
+     * @param enabled true to use a static layer, false by default
+     */
+    public void setStaticLayerEnabled(boolean enabled) {
+        if (mStaticLayerEnabled == enabled) {
+            return;
+        }
+        mStaticLayerEnabled = enabled;
+        releaseStaticLayer();
+        invalidate();
+    }
+
+    /**
+     * Receive the performance metrics of this view: durations of the draw, measure, setup and
+     * drawable state passes, rate of invalidation and frames of the page animations.
+     * The metrics are collected only while a listener is set.
+     *
+     * @param listener a listener or null to stop collecting the metrics
+     */
+    public void setMetricsListener(@Nullable MetricsListener listener) {
+        mMetrics.setListener(listener);
+    }
+
+    /**
+     * Wrap the draw, measure, setup and drawable state passes in {@link android.os.Trace}
+     * sections, visible in systrace and Perfetto. Sections are only emitted on API 18+.
+     *
+     * @param enabled true to emit trace sections, false by default
+     */
+    public void setTraceEnabled(boolean enabled) {
+        mMetrics.setTraceEnabled(enabled);
+    }
+
+    /**
+     * Change how the icons are loaded by {@link #setupWith(ViewPager)}.
+     * Deferring the loading keeps the icons out of the startup path of the screen.
+     * Has to be called before setting up the menu.
+     *
+     * @param iconLoading {@link #ICON_LOADING_EAGER}, {@link #ICON_LOADING_LAZY} or
+     *                    {@link #ICON_LOADING_ASYNC}
+     */
+    public void setIconLoading(@IconLoading int iconLoading) {
+        mIconLoading = iconLoading;
+    }
+
+    /**
+     * Change the drawable shown in place of the icons which are not loaded yet.
+     * See {@link #setIconLoading(int)}.
+     *
+     * @param placeholder a drawable or null to draw nothing.
+     */
+    public void setIconPlaceholder(@Nullable Drawable placeholder) {
+        mIconPlaceholder = placeholder;
+        invalidateGeometry();
+    }
+
+    /**
+     * Change the background drawable of each {@link Tab}.
+     * The {@link android.graphics.drawable.RippleDrawable} are supported by this view.
+     *
+     * @param tabBackground a drawable or null.
+     */
+    public void setTabBackground(@Nullable Drawable tabBackground) {
+        unregisterDrawableCallback();
+        mDefaultTabBackground = tabBackground;
+        if (mTabs != null) {
+            for (Tab tab : mTabs) {
+                tab.mDrawable = getCopyOfDefaultTabBackground();
+            }
+            resetVisibleTabs();
+            invalidateGeometry();
+        }
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        if (mTabs != null && !mTabs.isEmpty()) {
+            long start = mMetrics.beginSection(MenuMetrics.SECTION_DRAWABLE_STATE);
+            try {
+                int[] stateSet = getDrawableState();
+                int[] selectedState = obtainTabStateSet(stateSet, true);
+                int[] idleState = obtainTabStateSet(stateSet, false);
+                int index = getTabIndexAt(mLastTouchX);
+                mIdleTabStateSet = idleState;
+                for (int tabIndex = mFirstVisibleTab; tabIndex <= mLastVisibleTab; ++tabIndex) {
+                    Tab tab = mTabs.get(tabIndex);
+                    Drawable drawable = tab.getBackgroundDrawable();
+                    if (drawable != null && drawable.isStateful()) {
+                        // set current tab selected, remove selected and pressed state of the others
+                        int[] newState = (index == tabIndex) ? selectedState : idleState;
+                        if (drawable.getState() != newState && drawable.setState(newState)) {
+                            mStaticLayerDirty = true;
+                            invalidateTab(tabIndex);
+                        }
+                    }
+                }
+            } finally {
+                mMetrics.endSection(MenuMetrics.SECTION_DRAWABLE_STATE, start);
+            }
         }
         super.drawableStateChanged();
     }
 
+    /**
+     * Get the state set of a {@link Tab} background for the given state of this view.
+     * The state sets are cached and shared between the tabs: pressing and releasing the view
+     * switches between the same few state sets, so no array is allocated once they are known.
+     *
+     * @param stateSet the drawable state of this view
+     * @param selected true for the tab under the finger, false for the other tabs
+     * @return a state set which must not be modified
+     */
+    private int[] obtainTabStateSet(int[] stateSet, boolean selected) {
+        for (int i = 0; i < mTabStateSets.size(); ++i) {
+            int[] candidate = mTabStateSets.get(i);
+            if (isTabStateSet(candidate, stateSet, selected)) {
+                return candidate;
+            }
+        }
+
+        int[] newState;
+        if (selected) { // add the selected state
+            newState = new int[stateSet.length + 1];
+            System.arraycopy(stateSet, 0, newState, 0, stateSet.length);
+            newState[stateSet.length] = android.R.attr.state_selected;
+        } else { // remove selected and pressed state
+            newState = new int[stateSet.length];
+            for (int i = 0; i < newState.length; ++i) {
+                newState[i] = getIdleState(stateSet[i]);
+            }
+        }
+        if (mTabStateSets.size() >= MAX_TAB_STATE_SETS) {
+            mTabStateSets.clear();
+        }
+        mTabStateSets.add(newState);
+        return newState;
+    }
+
+    private static boolean isTabStateSet(int[] candidate, int[] stateSet, boolean selected) {
+        if (selected) {
+            if (candidate.length != stateSet.length + 1
+                    || candidate[stateSet.length] != android.R.attr.state_selected) {
+                return false;
+            }
+            for (int i = 0; i < stateSet.length; ++i) {
+                if (candidate[i] != stateSet[i]) {
+                    return false;
+                }
+            }
+        } else {
+            if (candidate.length != stateSet.length) {
+                return false;
+            }
+            for (int i = 0; i < stateSet.length; ++i) {
+                if (candidate[i] != getIdleState(stateSet[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int getIdleState(int state) {
+        if (state == android.R.attr.state_selected || state == android.R.attr.state_pressed) {
+            return 0;
+        }
+        return state;
+    }
+
+    /**
+     * Get the index of the {@link Tab} at a horizontal position.
+     *
+     * @param x a position in pixel relative to the content of this view, scroll included
+     * @return the index of the tab or -1 if there is no tab
+     */
+    private int getTabIndexAt(float x) {
+        if (mTabs == null || mTabs.isEmpty()) {
+            return -1;
+        }
+        if (mGeometryDirty) {
+            updateGeometry();
+        }
+        return mGeometry.getTabIndexAt((int) x);
+    }
+
+    /**
+     * Redraw the background of a single {@link Tab}.
+     *
+     * @param index the index of the tab
+     */
+    private void invalidateTab(int index) {
+        if (mGeometryDirty || index >= mTabBounds.length) {
+            invalidate();
+        } else {
+            invalidate(mTabBounds[index]);
+        }
+    }
+
     @Override
     public void drawableHotspotChanged(float x, float y) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && mTabs != null) {
-            int widthPerItem = getWidth() / mTabs.size();
-            int index = (int) (x / widthPerItem);
+        int index = getTabIndexAt(x + getScrollX());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && index >= 0) {
             Tab tab = mTabs.get(index);
             Drawable drawable = tab.getBackgroundDrawable();
             if (drawable != null) {
-                drawable.setHotspot(x, y);
+                drawable.setHotspot(x + getScrollX(), y);
             }
         }
         super.drawableHotspotChanged(x, y);
     }
 
+    @Override
+    public void invalidateDrawable(@NonNull Drawable drawable) {
+        if (mStaticLayerEnabled && mTabs != null) {
+            for (int i = mFirstVisibleTab; i <= mLastVisibleTab; ++i) {
+                if (mTabs.get(i).getBackgroundDrawable() == drawable) {
+                    onTabBackgroundAnimated(i);
+                    break;
+                }
+            }
+        }
+        super.invalidateDrawable(drawable);
+    }
+
+    /**
+     * Draw a tab outside of the static layer while its background is animated.
+     *
+     * @param index the index of the tab
+     */
+    private void onTabBackgroundAnimated(int index) {
+        if (index >= mTabAnimatedUntil.length) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (index < mTabInStaticLayer.length && mTabInStaticLayer[index]) {
+            mStaticLayerDirty = true;
+        }
+        mTabAnimatedUntil[index] = now + STATIC_LAYER_SETTLE_DELAY;
+        // Called on each frame of a ripple, post once and let the runnable wait for the end
+        if (!mStaticLayerSettlePending) {
+            mStaticLayerSettlePending = true;
+            postDelayed(mStaticLayerSettleRunnable, STATIC_LAYER_SETTLE_DELAY);
+        }
+    }
+
     @Override
     public void jumpDrawablesToCurrentState() {
         if (mTabs != null) {
-            for (Tab tab : mTabs) {
-                Drawable drawable = tab.getBackgroundDrawable();
+            for (int i = mFirstVisibleTab; i <= mLastVisibleTab; ++i) {
+                Drawable drawable = mTabs.get(i).getBackgroundDrawable();
                 if (drawable != null) {
                     drawable.jumpToCurrentState();
                 }
@@ -331,8 +1355,8 @@ public class BottomMenuView extends View {
     protected boolean verifyDrawable(@NonNull Drawable who) {
         boolean verified = false;
         if (mTabs != null) {
-            for (Tab tab : mTabs) {
-                Drawable drawable = tab.getBackgroundDrawable();
+            for (int i = mFirstVisibleTab; i <= mLastVisibleTab; ++i) {
+                Drawable drawable = mTabs.get(i).getBackgroundDrawable();
                 if (drawable != null && who == drawable) {
                     verified = true;
                 }
@@ -355,229 +1379,1674 @@ public class BottomMenuView extends View {
     }
 
     /**
-     * Setup this {@link BottomMenuView} with a {@link ViewPager}.
-     * The adapter used by the view pager has to implements {@link Adapter}.
-     *
-     * @param viewPager to be used.
+     * Setup this {@link BottomMenuView} with a {@link ViewPager}.
+     * The adapter used by the view pager has to implements {@link Adapter}. If it is later
+     * replaced by an adapter which does not, the menu is cleared and a warning is logged.
+     *
+     * @param viewPager to be used.
+     */
+    public void setupWith(ViewPager viewPager) {
+        long start = mMetrics.beginSection(MenuMetrics.SECTION_SETUP);
+        try {
+            cancelPageAnimation();
+            unregisterDrawableCallback();
+            releaseViewPager();
+            mViewPager = viewPager;
+            mViewPager.addOnPageChangeListener(mViewPagerPageChangeListener);
+            mViewPager.addOnAdapterChangeListener(mAdapterChangeListener);
+
+            PagerAdapter vpAdapter = mViewPager.getAdapter();
+            if (vpAdapter == null || !(mViewPager.getAdapter() instanceof Adapter)) {
+                throw new IllegalArgumentException("Adapter not implemented");
+            }
+            Adapter adapter = (Adapter) vpAdapter;
+            observeAdapter(vpAdapter);
+            mTabs = new ArrayList<>();
+            for (int i = 0; i < vpAdapter.getCount(); ++i) {
+                mTabs.add(createAdapterTab(adapter.getMenuIcon(i)));
+            }
+            // Before the state is changed: its observer must not use the old geometry
+            resetVisibleTabs();
+            invalidateGeometry();
+            mState.beginBatch();
+            mState.setPageCount(mTabs.size());
+            mState.reset(mViewPager.getCurrentItem());
+            mState.endBatch();
+            loadIcons();
+            if (updateHasLabels()) {
+                updateMeasuredSize();
+            }
+
+            if (mListener != null) {
+                mListener.onMenuPageChanged(mState.getCurrentPage());
+            }
+            mIconAtlasDirty = true;
+            dispatchScrollProgress();
+        } finally {
+            mMetrics.endSection(MenuMetrics.SECTION_SETUP, start);
+        }
+    }
+
+    /**
+     * Setup this {@link BottomMenuView} by providing a list of {@link Tab}.
+     * You can implements {@link Listener} and use {@link #setListener(Listener)} to handle events.
+     *
+     * @param tabs The list of tabs
+     */
+    public void setupWith(@Nullable List<Tab> tabs) {
+        long start = mMetrics.beginSection(MenuMetrics.SECTION_SETUP);
+        try {
+            releaseViewPager();
+            cancelPageAnimation();
+            unregisterDrawableCallback();
+
+            // Copied, the tabs can be edited afterwards, see addTab() and submitTabs()
+            mTabs = tabs == null ? null : new ArrayList<>(tabs);
+            // Before the state is changed: its observer must not use the old geometry
+            resetVisibleTabs();
+            invalidateGeometry();
+            mState.beginBatch();
+            mState.setPageCount(mTabs == null ? 0 : mTabs.size());
+            mState.reset(0);
+            mState.endBatch();
+            loadIcons();
+            if (updateHasLabels()) {
+                updateMeasuredSize();
+            }
+
+            if (mListener != null) {
+                mListener.onMenuPageChanged(mState.getCurrentPage());
+            }
+            mIconAtlasDirty = true;
+            dispatchScrollProgress();
+        } finally {
+            mMetrics.endSection(MenuMetrics.SECTION_SETUP, start);
+        }
+    }
+
+    private Tab createAdapterTab(@DrawableRes int icon) {
+        return new Tab(
+                getContext(),
+                icon,
+                getCopyOfDefaultTabBackground(),
+                mIconLoading != ICON_LOADING_EAGER
+        );
+    }
+
+    /**
+     * Stop following the {@link ViewPager} given to {@link #setupWith(ViewPager)}, if any.
+     */
+    private void releaseViewPager() {
+        cancelScrub();
+        if (mViewPager != null) {
+            mViewPager.removeOnPageChangeListener(mViewPagerPageChangeListener);
+            mViewPager.removeOnAdapterChangeListener(mAdapterChangeListener);
+            mViewPager = null;
+        }
+        observeAdapter(null);
+    }
+
+    private void observeAdapter(@Nullable PagerAdapter adapter) {
+        if (mObservedAdapter != null) {
+            mObservedAdapter.unregisterDataSetObserver(mAdapterObserver);
+        }
+        mObservedAdapter = adapter;
+        if (adapter != null) {
+            adapter.registerDataSetObserver(mAdapterObserver);
+        }
+    }
+
+    /**
+     * Update the tabs after a change of the adapter of the {@link ViewPager}.
+     * The icons of the old and new pages are compared: the tabs of the unchanged icons are
+     * kept, only the tabs of the new or changed icons are created.
+     */
+    private void updateTabsFromAdapter() {
+        if (mViewPager == null) {
+            return;
+        }
+        // Only the adapters implementing Adapter are observed
+        PagerAdapter vpAdapter = mObservedAdapter;
+        int count = vpAdapter == null ? 0 : vpAdapter.getCount();
+        List<Integer> newIcons = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            newIcons.add(((Adapter) vpAdapter).getMenuIcon(i));
+        }
+        List<Integer> oldIcons = new ArrayList<>(mTabs.size());
+        for (Tab tab : mTabs) {
+            oldIcons.add(tab.mIconRes);
+        }
+        if (oldIcons.equals(newIcons)) {
+            // Nothing to update, the underline must not snap in the middle of a swipe
+            return;
+        }
+
+        beginTabsUpdate();
+        boolean[] keptOld = new boolean[oldIcons.size()];
+        boolean[] keptNew = new boolean[count];
+        ListDiff.computeCommon(oldIcons, newIcons, keptOld, keptNew);
+        for (int i = keptOld.length - 1; i >= 0; --i) {
+            if (!keptOld[i]) {
+                removeTabAt(i);
+            }
+        }
+        for (int i = 0; i < keptNew.length; ++i) {
+            if (!keptNew[i]) {
+                insertTab(i, createAdapterTab(newIcons.get(i)));
+            }
+        }
+        // The ViewPager already selected its new current item
+        endTabsUpdate(count == 0 ? -1 : Math.min(mViewPager.getCurrentItem(), count - 1));
+    }
+
+    /**
+     * Add a {@link Tab} at the end of the menu, see {@link #addTab(int, Tab)}.
+     *
+     * @param tab the tab to add
+     */
+    public void addTab(@NonNull Tab tab) {
+        addTab(mTabs == null ? 0 : mTabs.size(), tab);
+    }
+
+    /**
+     * Insert a {@link Tab} without setting up the menu again: the current tab stays selected
+     * and only the new tab is registered to this view.
+     * Not supported when the menu has been setup with a {@link ViewPager}.
+     *
+     * @param index the index of the new tab
+     * @param tab the tab to add
+     */
+    public void addTab(int index, @NonNull Tab tab) {
+        checkTabsEditable();
+        Tab selectedTab = beginTabsUpdate();
+        insertTab(index, tab);
+        endTabsUpdate(selectedTab);
+    }
+
+    /**
+     * Remove a {@link Tab}. When the current tab is removed, the nearest tab is selected.
+     * Not supported when the menu has been setup with a {@link ViewPager}.
+     *
+     * @param index the index of the tab to remove
+     */
+    public void removeTab(int index) {
+        checkTabsEditable();
+        Tab selectedTab = beginTabsUpdate();
+        removeTabAt(index);
+        endTabsUpdate(selectedTab);
+    }
+
+    /**
+     * Move a {@link Tab}, the current tab stays selected.
+     * Not supported when the menu has been setup with a {@link ViewPager}.
+     *
+     * @param fromIndex the index of the tab
+     * @param toIndex the new index of the tab
+     */
+    public void moveTab(int fromIndex, int toIndex) {
+        checkTabsEditable();
+        Tab selectedTab = beginTabsUpdate();
+        insertTab(toIndex, removeTabAt(fromIndex));
+        endTabsUpdate(selectedTab);
+    }
+
+    /**
+     * Replace a {@link Tab}. If it was the current tab, the new tab is selected.
+     * Not supported when the menu has been setup with a {@link ViewPager}.
+     *
+     * @param index the index of the tab to replace
+     * @param tab the new tab
+     */
+    public void replaceTab(int index, @NonNull Tab tab) {
+        checkTabsEditable();
+        Tab selectedTab = beginTabsUpdate();
+        removeTabAt(index);
+        insertTab(index, tab);
+        endTabsUpdate(selectedTab);
+    }
+
+    /**
+     * Change the tabs of the menu to a new list, computing the minimal set of tabs to remove
+     * and insert. The tabs are compared by identity: the tabs in both lists are kept as they
+     * are, and the current tab stays selected if it is still in the menu.
+     * Unlike {@link #setupWith(List)}, the listener is only called if the current page changes.
+     * Not supported when the menu has been setup with a {@link ViewPager}.
+     *
+     * @param tabs the new tabs
+     */
+    public void submitTabs(@NonNull List<Tab> tabs) {
+        checkTabsEditable();
+        final Tab selectedTab = beginTabsUpdate();
+        boolean[] keptOld = new boolean[mTabs.size()];
+        boolean[] keptNew = new boolean[tabs.size()];
+        ListDiff.computeCommon(mTabs, tabs, keptOld, keptNew);
+        for (int i = keptOld.length - 1; i >= 0; --i) {
+            if (!keptOld[i]) {
+                removeTabAt(i);
+            }
+        }
+        for (int i = 0; i < keptNew.length; ++i) {
+            if (!keptNew[i]) {
+                insertTab(i, tabs.get(i));
+            }
+        }
+        endTabsUpdate(selectedTab);
+    }
+
+    /**
+     * Animate the underline to the new current tab when the current tab is removed by
+     * {@link #removeTab(int)}, {@link #submitTabs(List)}...
+     *
+     * @param animated true to animate, false by default
+     */
+    public void setTabChangesAnimated(boolean animated) {
+        mTabChangesAnimated = animated;
+    }
+
+    /**
+     * Prepare an edit of {@link #mTabs}, must be followed by {@link #endTabsUpdate(Tab)}.
+     * The backgrounds of the visible tabs are unregistered, the tabs visible after the edit are
+     * registered again once the geometry is updated.
+     *
+     * @return the current tab, null if there is none
+     */
+    @Nullable
+    private Tab beginTabsUpdate() {
+        setPageAboutToChange(-1);
+        cancelPageAnimation();
+        if (mTabs == null) {
+            mTabs = new ArrayList<>();
+        }
+        for (int i = mFirstVisibleTab; i <= mLastVisibleTab; ++i) {
+            setTabBackgroundAttached(i, false);
+        }
+        resetVisibleTabs();
+        int currentPage = mState.getCurrentPage();
+        return currentPage < mTabs.size() ? mTabs.get(currentPage) : null;
+    }
+
+    private void checkTabsEditable() {
+        if (mViewPager != null) {
+            throw new IllegalStateException("The tabs are provided by the ViewPager adapter");
+        }
+    }
+
+    private void insertTab(int index, Tab tab) {
+        mTabs.add(index, tab);
+        if (mIconLoading == ICON_LOADING_ASYNC) {
+            loadIcon(tab, mIconLoadGeneration);
+        }
+    }
+
+    private Tab removeTabAt(int index) {
+        Tab tab = mTabs.remove(index);
+        Drawable drawable = tab.getBackgroundDrawable();
+        if (drawable != null) {
+            drawable.setCallback(null);
+        }
+        return tab;
+    }
+
+    /**
+     * Select the tab selected before the edit, or the nearest one if it has been removed, and
+     * lay out the tabs again.
+     *
+     * @param selectedTab the value returned by {@link #beginTabsUpdate()}
+     */
+    private void endTabsUpdate(@Nullable Tab selectedTab) {
+        endTabsUpdate(selectedTab == null ? -1 : mTabs.indexOf(selectedTab));
+    }
+
+    /**
+     * Select a page after an edit of the tabs and lay out the tabs again.
+     *
+     * @param page the new current page, -1 if the current tab has been removed
+     */
+    private void endTabsUpdate(int page) {
+        int previousPage = mState.getCurrentPage();
+        boolean selectedTabRemoved = page < 0;
+        if (selectedTabRemoved) {
+            page = Math.max(0, Math.min(previousPage, mTabs.size() - 1));
+        }
+        boolean animated = selectedTabRemoved && mTabChangesAnimated && !mTabs.isEmpty();
+
+        // The next tab takes the index of the removed one: the animation starts from where the
+        // underline is drawn, mapped to the new tabs
+        float from = Math.min(mState.getScrollPosition(), mTabs.size() - 1);
+        boolean drawn = !mGeometryDirty && mGeometry.getItemCount() > 0 && getWidth() > 0;
+        float fromX = animated && drawn
+                ? mGeometry.getUnderlineCenterX(mState.getScrollPage(), mState.getScrollOffset())
+                : 0f;
+
+        // Before the state is changed: its observer must not use the old geometry
+        invalidateGeometry();
+        if (animated && drawn) {
+            updateGeometry();
+            from = mGeometry.getScrollPosition(fromX);
+        }
+        mState.beginBatch();
+        mState.setPageCount(mTabs.size());
+        if (animated) {
+            mState.setSelection(page, Math.min(previousPage, mTabs.size() - 1));
+            mState.setScrollPosition(from);
+            startPageAnimation(from, page);
+        } else {
+            mState.reset(page);
+        }
+        mState.endBatch();
+
+        mIconAtlasDirty = true;
+        if (updateHasLabels()) {
+            updateMeasuredSize();
+        }
+        dispatchScrollProgress();
+        if ((selectedTabRemoved || page != previousPage) && mListener != null
+                && !mTabs.isEmpty()) {
+            mListener.onMenuPageChanged(page);
+        }
+    }
+
+    /**
+     * Start loading the deferred icons in background when {@link #ICON_LOADING_ASYNC} is used.
+     * With the other modes, the deferred icons are loaded when they are first drawn.
+     */
+    private void loadIcons() {
+        final int generation = ++mIconLoadGeneration;
+        if (mTabs == null || mIconLoading != ICON_LOADING_ASYNC) {
+            return;
+        }
+        for (Tab tab : mTabs) {
+            loadIcon(tab, generation);
+        }
+    }
+
+    /**
+     * Load the deferred icon of a {@link Tab} in background.
+     *
+     * @param tab the tab
+     * @param generation the value of {@link #mIconLoadGeneration} for this load
+     */
+    private void loadIcon(final Tab tab, final int generation) {
+        final Context context = tab.mIconContext;
+        if (tab.getIconDrawable() != null || context == null) {
+            return;
+        }
+        final int icon = tab.mIconRes;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Drawable drawable
+                        = IconCache.getInstance(context).getDrawable(context, icon);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onIconLoaded(generation, tab, drawable);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onIconLoaded(int generation, Tab tab, @Nullable Drawable icon) {
+        if (generation != mIconLoadGeneration || mTabs == null || icon == null
+                || tab.getIconDrawable() != null) {
+            return;
+        }
+        int index = mTabs.indexOf(tab);
+        if (index < 0) {
+            return;
+        }
+        tab.setIconDrawable(icon);
+        if (!updateIconAtlasCell(index, icon)) {
+            mIconAtlasDirty = true;
+        }
+        mStaticLayerDirty = true;
+        if (mGeometryDirty || index >= mIconBounds.length) {
+            invalidate();
+            return;
+        }
+        icon.setBounds(mIconBounds[index]);
+        mDirtyRect.setEmpty();
+        unionIconBounds(mDirtyRect, index);
+        invalidate(mDirtyRect);
+    }
+
+    /**
+     * Get the icon of a {@link Tab}, loading it if it has been deferred.
+     *
+     * @param index the index of the tab
+     * @return the icon or null while it is loaded in background
+     */
+    @Nullable
+    private Drawable getTabIcon(int index) {
+        Tab tab = mTabs.get(index);
+        Drawable icon = tab.getIconDrawable();
+        if (icon == null && mIconLoading != ICON_LOADING_ASYNC) {
+            icon = tab.loadIcon();
+            if (icon != null && index < mIconBounds.length) {
+                icon.setBounds(mIconBounds[index]);
+            }
+        }
+        return icon;
+    }
+
+    /**
+     * Consider no {@link Tab} as visible, as it is the case after a setup: the backgrounds of
+     * the visible tabs are registered by {@link #updateVisibleTabs()} once the geometry is known.
+     * The backgrounds of the previous tabs must have been unregistered.
+     */
+    private void resetVisibleTabs() {
+        mFirstVisibleTab = 0;
+        mLastVisibleTab = -1;
+    }
+
+    /**
+     * Update the range of visible tabs after a scroll or a layout change.
+     * The backgrounds of the tabs leaving the visible part of the menu are reset and
+     * unregistered, the ones entering it are registered with the current state.
+     */
+    private void updateVisibleTabs() {
+        int first = mGeometry.getFirstVisibleTab(getScrollX());
+        int last = mGeometry.getLastVisibleTab(getScrollX(), getWidth());
+        if (first == mFirstVisibleTab && last == mLastVisibleTab) {
+            return;
+        }
+
+        for (int i = mFirstVisibleTab; i <= mLastVisibleTab; ++i) {
+            if (i < first || i > last) {
+                setTabBackgroundAttached(i, false);
+            }
+        }
+        for (int i = first; i <= last; ++i) {
+            if (i < mFirstVisibleTab || i > mLastVisibleTab) {
+                setTabBackgroundAttached(i, true);
+            }
+        }
+        mFirstVisibleTab = first;
+        mLastVisibleTab = last;
+    }
+
+    private void setTabBackgroundAttached(int index, boolean attached) {
+        Drawable drawable = mTabs.get(index).getBackgroundDrawable();
+        if (drawable == null) {
+            return;
+        }
+        drawable.setCallback(attached ? this : null);
+        if (drawable.isStateful()) {
+            drawable.setState(obtainTabStateSet(getDrawableState(), false));
+        }
+        drawable.jumpToCurrentState();
+    }
+
+    /**
+     * Scroll the menu to keep the underline in the middle of the view, when the tabs do not fit.
+     * A strip panned by the user only stays in the bounds of the tabs.
+     */
+    private void updateStripScroll() {
+        int scrollX = mStripPanned
+                ? Math.max(0, Math.min(getScrollX(), mGeometry.getMaxScroll()))
+                : mGeometry.getStripScroll(mScrollCurrentPage, mScrollPageOffset, getWidth());
+        if (scrollX != getScrollX()) {
+            scrollTo(scrollX, 0);
+        }
+        updateVisibleTabs();
+    }
+
+    private void unregisterDrawableCallback() {
+        if (mTabs != null) {
+            for (Tab tab : mTabs) {
+                Drawable drawable = tab.getBackgroundDrawable();
+                if (drawable != null) {
+                    drawable.setCallback(null);
+                }
+            }
+        }
+    }
+
+    private Drawable getCopyOfDefaultTabBackground() {
+        if (mDefaultTabBackground != null) {
+            Drawable.ConstantState state = mDefaultTabBackground.getConstantState();
+            if (state != null) {
+                // Registered by updateVisibleTabs() once the tab is visible
+                return state.newDrawable();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void setPadding(int left, int top, int right, int bottom) {
+        super.setPadding(left, top, right, bottom);
+        invalidateGeometry();
+    }
+
+    @Override
+    public void setPaddingRelative(int start, int top, int end, int bottom) {
+        super.setPaddingRelative(start, top, end, bottom);
+        invalidateGeometry();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateGeometry();
+    }
+
+    /**
+     * Mark the cached geometry as stale and redraw the view.
+     * The geometry is rebuilt once, right before the next draw.
+     */
+    private void invalidateGeometry() {
+        mGeometryDirty = true;
+        mStaticLayerDirty = true;
+        invalidate();
+    }
+
+    /**
+     * Compute the bounds of every background, icon and underline position.
+     * The bounds are pushed to the drawables here so that {@link #onDraw(Canvas)} only has to
+     * translate the underline and the animated icons.
+     */
+    private void updateGeometry() {
+        mGeometryDirty = false;
+        int itemCount = mTabs == null ? 0 : mTabs.size();
+        if (mTabBounds.length != itemCount) {
+            mTabBounds = new Rect[itemCount];
+            mIconBounds = new Rect[itemCount];
+            mTabWeights = new float[itemCount];
+            mTabInStaticLayer = new boolean[itemCount];
+            mTabAnimatedUntil = new long[itemCount];
+            mTabLabels = new CharSequence[itemCount];
+            for (int i = 0; i < itemCount; ++i) {
+                mTabBounds[i] = new Rect();
+                mIconBounds[i] = new Rect();
+            }
+        }
+        for (int i = 0; i < itemCount; ++i) {
+            mTabWeights[i] = mTabs.get(i).getWeight();
+        }
+        mGeometry.layout(mTabWeights, itemCount, getWidth(), mMinTabWidth);
+        if (itemCount == 0) {
+            updateStripScroll();
+            return;
+        }
+
+        int iconSize = getIconPixelSize();
+        for (int i = 0; i < itemCount; ++i) {
+            Tab tab = mTabs.get(i);
+
+            Rect tabBounds = mTabBounds[i];
+            tabBounds.set(
+                    mGeometry.getTabLeft(i), // left
+                    0, // top
+                    mGeometry.getTabRight(i), // right
+                    getMeasuredHeight() // bottom
+            );
+            Drawable background = tab.getBackgroundDrawable();
+            if (background != null) {
+                background.setBounds(tabBounds);
+            }
+
+            int iconLeft = (int) mGeometry.getIconLeft(i, mItemSize);
+            int iconTop = getPaddingTop();
+            Rect iconBounds = mIconBounds[i];
+            iconBounds.set(iconLeft, iconTop, iconLeft + iconSize, iconTop + iconSize);
+            Drawable icon = tab.getIconDrawable();
+            if (icon != null) {
+                icon.setBounds(iconBounds);
+            }
+
+            updateLabel(i);
+        }
+        mLabelBaseline = getPaddingTop() + mItemSize + mLabelSpacing - mLabelFontMetrics.ascent;
+
+        // The counts fill 70% of the height of their badge
+        float badgeTextSize = getBadgeHeight(1) * 0.7f;
+        if (mBadgeTextPaint.getTextSize() != badgeTextSize) {
+            mBadgeTextPaint.setTextSize(badgeTextSize);
+            mBadgeTextPaint.getFontMetrics(mBadgeFontMetrics);
+            mBadgeTextOffsetY = -(mBadgeFontMetrics.ascent + mBadgeFontMetrics.descent) / 2f;
+            mBadgeTexts.clear();
+        }
+
+        if (mIconPlaceholder != null) {
+            // The placeholder is shared by the tabs and translated while drawing
+            mIconPlaceholder.setBounds(0, 0, iconSize, iconSize);
+        }
+        updateStripScroll();
+    }
+
+    /**
+     * Get the size of the icons in whole pixels: the size of their bounds and of their cells in
+     * the icon atlas, which is then drawn without scaling.
+     *
+     * @return the size of the icons in pixel
+     */
+    private int getIconPixelSize() {
+        return Math.round(mItemSize);
+    }
+
+    /**
+     * Rasterize the icon of each {@link Tab} into {@link #mIconAtlas}.
+     * The icons are laid out in a grid of cells of the icon size.
+     */
+    private void updateIconAtlas() {
+        releaseIconAtlas();
+        mIconAtlasDirty = false;
+        int itemCount = mTabs == null ? 0 : mTabs.size();
+        int cellSize = getIconPixelSize();
+        if (itemCount == 0 || cellSize <= 0) {
+            return;
+        }
+
+        int columns = Math.max(1, Math.min(itemCount, MAX_ICON_ATLAS_WIDTH / cellSize));
+        int rows = (itemCount + columns - 1) / columns;
+        Bitmap atlas;
+        try {
+            atlas = Bitmap.createBitmap(columns * cellSize, rows * cellSize,
+                    Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            // Draw the icon drawables directly instead
+            return;
+        }
+
+        if (mIconAtlasBounds.length != itemCount) {
+            mIconAtlasBounds = new Rect[itemCount];
+            for (int i = 0; i < itemCount; ++i) {
+                mIconAtlasBounds[i] = new Rect();
+            }
+        }
+        Canvas canvas = new Canvas(atlas);
+        for (int i = 0; i < itemCount; ++i) {
+            int left = (i % columns) * cellSize;
+            int top = (i / columns) * cellSize;
+            mIconAtlasBounds[i].set(left, top, left + cellSize, top + cellSize);
+
+            Drawable icon = getTabIcon(i);
+            if (icon != null) {
+                icon.setBounds(mIconAtlasBounds[i]);
+                icon.draw(canvas);
+                icon.setBounds(mIconBounds[i]);
+            }
+        }
+        mIconAtlas = atlas;
+        mIconAtlasCanvas = canvas;
+    }
+
+    /**
+     * Rasterize the icon of a {@link Tab} into its cell of {@link #mIconAtlas}, without
+     * rasterizing the other icons again.
+     *
+     * @param index the index of the tab
+     * @param icon the icon of the tab
+     * @return false if the whole atlas must be rebuilt, when there is no atlas or when the
+     *     tabs or the icon size changed since it was built
+     */
+    private boolean updateIconAtlasCell(int index, Drawable icon) {
+        if (mIconAtlasDirty || mIconAtlasCanvas == null
+                || mIconAtlasBounds.length != mTabs.size()) {
+            return false;
+        }
+        Rect cell = mIconAtlasBounds[index];
+        if (cell.width() != getIconPixelSize()) {
+            return false;
+        }
+        final int count = mIconAtlasCanvas.save();
+        mIconAtlasCanvas.clipRect(cell);
+        mIconAtlasCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        mIconAtlasCanvas.restoreToCount(count);
+        icon.setBounds(cell);
+        icon.draw(mIconAtlasCanvas);
+        return true;
+    }
+
+    private void releaseIconAtlas() {
+        if (mIconAtlas != null) {
+            mIconAtlas.recycle();
+            mIconAtlas = null;
+            mIconAtlasCanvas = null;
+        }
+        mIconAtlasDirty = true;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mState.addObserver(mStateObserver);
+        mStateObserved = true;
+        // The state may have changed while the view was detached
+        applyState();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(mStaticLayerSettleRunnable);
+        cancelScrub();
+        mStripPanning = false;
+        mStripScroller.abortAnimation();
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+        if (mPageSpringRunning && mPageSpring != null) {
+            // Finish the page change at once, the frames are not drawn anymore
+            stopPageSpring();
+            mPageSpring.snapToTarget();
+            setInternalPageScrolled(clampPage(mPageSpring.getTarget()));
+        }
+        endViewPagerBatch();
+        mState.removeObserver(mStateObserver);
+        mStateObserved = false;
+        mStaticLayerSettlePending = false;
+        releaseIconAtlas();
+        releaseStaticLayer();
+    }
+
+    /**
+     * Draw the tabs which are not animated into {@link #mStaticLayer}.
+     * The layer covers the visible part of the menu and, when it scrolls, a margin on each side,
+     * see {@link #STATIC_LAYER_SCROLL_MARGIN}.
+     */
+    private void updateStaticLayer() {
+        mStaticLayerDirty = false;
+        mStaticLayerScrollPage = mScrollCurrentPage;
+        int contentWidth = getWidth() + mGeometry.getMaxScroll();
+        int margin = (int) (getWidth() * STATIC_LAYER_SCROLL_MARGIN);
+        int layerWidth = Math.min(getWidth() + 2 * margin, contentWidth);
+        mStaticLayerLeft = Math.max(0, Math.min(getScrollX() - margin, contentWidth - layerWidth));
+        if (mStaticLayer == null
+                || mStaticLayer.getWidth() != layerWidth
+                || mStaticLayer.getHeight() != getHeight()) {
+            releaseStaticLayer();
+            mStaticLayerDirty = false;
+            if (layerWidth <= 0 || getHeight() <= 0) {
+                return;
+            }
+            try {
+                mStaticLayer = Bitmap.createBitmap(layerWidth, getHeight(),
+                        Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                // Draw every tab directly instead
+                return;
+            }
+            mStaticLayerCanvas = new Canvas(mStaticLayer);
+        } else {
+            mStaticLayer.eraseColor(Color.TRANSPARENT);
+        }
+
+        // The tabs out of the visible part are reset to the idle state, see updateVisibleTabs()
+        int first = mGeometry.getTabIndexAt(mStaticLayerLeft);
+        int last = mGeometry.getTabIndexAt(mStaticLayerLeft + layerWidth - 1);
+        long now = SystemClock.uptimeMillis();
+        Arrays.fill(mTabInStaticLayer, false);
+        int count = mStaticLayerCanvas.save();
+        mStaticLayerCanvas.translate(-mStaticLayerLeft, 0);
+        for (int i = first; i <= last; ++i) {
+            mTabInStaticLayer[i] = !isTabAnimated(i, now);
+            if (mTabInStaticLayer[i]) {
+                drawTab(mStaticLayerCanvas, i);
+            }
+        }
+        mStaticLayerCanvas.restoreToCount(count);
+    }
+
+    /**
+     * Check if the static layer covers the visible part of the menu.
+     *
+     * @return true if the static layer can be drawn
+     */
+    private boolean isStaticLayerVisible() {
+        return mStaticLayer != null
+                && getScrollX() >= mStaticLayerLeft
+                && getScrollX() + getWidth() <= mStaticLayerLeft + mStaticLayer.getWidth();
+    }
+
+    /**
+     * Check if a tab has to be drawn on each frame: its icon is moved by the scroll or its
+     * background is touched or animated.
+     *
+     * @return true if the tab cannot be drawn in the static layer
+     */
+    private boolean isTabAnimated(int index, long now) {
+        if (index == mScrollCurrentPage || index == mScrollCurrentPage + 1
+                || mTabAnimatedUntil[index] > now) {
+            return true;
+        }
+        Drawable background = mTabs.get(index).getBackgroundDrawable();
+        return background != null && background.isStateful()
+                && mIdleTabStateSet != null && background.getState() != mIdleTabStateSet;
+    }
+
+    private void releaseStaticLayer() {
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+            mStaticLayer = null;
+            mStaticLayerCanvas = null;
+        }
+        mStaticLayerDirty = true;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        long start = mMetrics.beginSection(MenuMetrics.SECTION_DRAW);
+        try {
+            if (mTabs == null || mTabs.isEmpty()) {
+                return;
+            }
+            if (mGeometryDirty) {
+                updateGeometry();
+            }
+            if (mIconAtlasEnabled && mIconAtlasDirty) {
+                updateIconAtlas();
+            }
+
+            if (mStaticLayerEnabled) {
+                if (mStaticLayerDirty
+                        || mStaticLayerScrollPage != mScrollCurrentPage
+                        || (mStaticLayer != null && !isStaticLayerVisible())) {
+                    updateStaticLayer();
+                }
+            }
+
+            // Draw icons and backgrounds of the visible tabs
+            if (mStaticLayer != null) {
+                canvas.drawBitmap(mStaticLayer, mStaticLayerLeft, 0, mStaticLayerPaint);
+                for (int i = mFirstVisibleTab; i <= mLastVisibleTab; ++i) {
+                    if (!mTabInStaticLayer[i]) {
+                        drawTab(canvas, i);
+                    }
+                }
+            } else {
+                for (int i = mFirstVisibleTab; i <= mLastVisibleTab; ++i) {
+                    drawTab(canvas, i);
+                }
+            }
+
+            // Draw underline, the renderer interpolates between the two pages
+            updateIndicatorBounds();
+            mIndicatorRenderer.draw(canvas, mIndicatorFrom, mIndicatorTo, mScrollPageOffset);
+        } finally {
+            mMetrics.endSection(MenuMetrics.SECTION_DRAW, start);
+        }
+    }
+
+    private void drawTab(Canvas canvas, int index) {
+        Drawable background = mTabs.get(index).getBackgroundDrawable();
+        if (background != null) {
+            background.draw(canvas);
+        }
+
+        // Only the icons of the scrolled pages move, the others are drawn at rest
+        int translationY = getIconOffsetY(index) - getPaddingTop();
+        if (translationY == 0) {
+            drawIcon(canvas, index);
+            drawBadge(canvas, index);
+        } else {
+            final int count = canvas.save();
+            canvas.translate(0, translationY);
+            drawIcon(canvas, index);
+            drawBadge(canvas, index);
+            canvas.restoreToCount(count);
+        }
+
+        CharSequence label = mTabLabels[index];
+        if (label != null) {
+            mLabelPaint.setColor(blendColors(mLabelColor, mLabelSelectedColor,
+                    getSelectionFraction(index)));
+            Rect tabBounds = mTabBounds[index];
+            canvas.drawText(label, 0, label.length(),
+                    (tabBounds.left + tabBounds.right) / 2f, mLabelBaseline, mLabelPaint);
+        }
+    }
+
+    /**
+     * Get how much a tab is selected by the scroll, to blend the color of its label.
+     *
+     * @return 1 if the menu is scrolled to the tab, 0 if it is scrolled to another tab
+     */
+    private float getSelectionFraction(int index) {
+        if (index == mScrollCurrentPage) {
+            return 1f - mScrollPageOffset;
+        } else if (index == mScrollCurrentPage + 1) {
+            return mScrollPageOffset;
+        }
+        return 0f;
+    }
+
+    private static int blendColors(@ColorInt int from, @ColorInt int to, float fraction) {
+        if (fraction <= 0f) {
+            return from;
+        } else if (fraction >= 1f) {
+            return to;
+        }
+        int a = Color.alpha(from) + (int) ((Color.alpha(to) - Color.alpha(from)) * fraction);
+        int r = Color.red(from) + (int) ((Color.red(to) - Color.red(from)) * fraction);
+        int g = Color.green(from) + (int) ((Color.green(to) - Color.green(from)) * fraction);
+        int b = Color.blue(from) + (int) ((Color.blue(to) - Color.blue(from)) * fraction);
+        return Color.argb(a, r, g, b);
+    }
+
+    private void drawBadge(Canvas canvas, int index) {
+        int badge = mTabs.get(index).getBadge();
+        if (!getBadgeRect(index, badge, mBadgeRect)) {
+            return;
+        }
+        float radius = mBadgeRect.height() / 2f;
+        canvas.drawRoundRect(mBadgeRect, radius, radius, mBadgePaint);
+        if (badge > 0) {
+            canvas.drawText(
+                    obtainBadgeText(badge).mText,
+                    (mBadgeRect.left + mBadgeRect.right) / 2f,
+                    (mBadgeRect.top + mBadgeRect.bottom) / 2f + mBadgeTextOffsetY,
+                    mBadgeTextPaint
+            );
+        }
+    }
+
+    /**
+     * Get the resting bounds of a badge, over the top right corner of the icon.
+     *
+     * @param index the index of the tab
+     * @param badge the badge of the tab
+     * @param out the bounds of the badge
+     * @return false if there is no badge to draw
+     */
+    private boolean getBadgeRect(int index, int badge, RectF out) {
+        if (badge == BADGE_NONE || index >= mIconBounds.length) {
+            return false;
+        }
+        Rect iconBounds = mIconBounds[index];
+        float height = getBadgeHeight(badge);
+        float width = badge > 0
+                ? Math.max(height, obtainBadgeText(badge).mWidth + height / 2f)
+                : height;
+        float left = iconBounds.right - height / 2f;
+        out.set(left, iconBounds.top, left + width, iconBounds.top + height);
+        return true;
+    }
+
+    private float getBadgeHeight(int badge) {
+        return badge == BADGE_DOT ? mItemSize / 4f : mItemSize / 2f;
+    }
+
+    /**
+     * Get the text of a count, measured on first use.
+     *
+     * @param count a positive count
+     * @return the cached text and width of the count
+     */
+    private BadgeText obtainBadgeText(int count) {
+        count = Math.min(count, MAX_BADGE_COUNT + 1);
+        BadgeText badgeText = mBadgeTexts.get(count);
+        if (badgeText == null) {
+            String text = count > MAX_BADGE_COUNT
+                    ? MAX_BADGE_COUNT + "+"
+                    : String.valueOf(count);
+            badgeText = new BadgeText(text, mBadgeTextPaint.measureText(text));
+            mBadgeTexts.put(count, badgeText);
+        }
+        return badgeText;
+    }
+
+    /**
+     * Add the bounds of a badge to a dirty region.
+     *
+     * @param dirty the region to extend
+     * @param index the index of the tab
+     * @param lift the highest vertical move of the badge, see {@link #getIconOffsetY(int)}
+     */
+    private void unionBadgeBounds(Rect dirty, int index, int lift) {
+        if (mGeometryDirty || !getBadgeRect(index, mTabs.get(index).getBadge(), mBadgeRect)) {
+            return;
+        }
+        mBadgeRect.roundOut(mBadgeBounds);
+        dirty.union(
+                mBadgeBounds.left,
+                mBadgeBounds.top - lift,
+                mBadgeBounds.right,
+                mBadgeBounds.bottom
+        );
+    }
+
+    private void drawIcon(Canvas canvas, int index) {
+        Drawable icon = getTabIcon(index);
+        if (icon == null) {
+            if (mIconPlaceholder != null) {
+                Rect iconBounds = mIconBounds[index];
+                int count = canvas.save();
+                canvas.translate(iconBounds.left, iconBounds.top);
+                mIconPlaceholder.draw(canvas);
+                canvas.restoreToCount(count);
+            }
+        } else if (mIconAtlas != null) {
+            canvas.drawBitmap(mIconAtlas, mIconAtlasBounds[index], mIconBounds[index],
+                    mIconAtlasPaint);
+        } else {
+            icon.draw(canvas);
+        }
+    }
+
+    /**
+     * Start collecting the region to redraw for a change of the scroll position or of the
+     * selected page. Must be followed by {@link #endScrollUpdate()} once the state is updated.
+     */
+    private void beginScrollUpdate() {
+        mDirtyRect.setEmpty();
+        unionMovingParts(mDirtyRect);
+    }
+
+    /**
+     * Redraw the underline and the icons moved since {@link #beginScrollUpdate()}.
+     */
+    private void endScrollUpdate() {
+        dispatchScrollProgress();
+        if (mGeometryDirty) {
+            invalidate();
+            return;
+        }
+        updateStripScroll();
+        unionMovingParts(mDirtyRect);
+        if (!mDirtyRect.isEmpty()) {
+            invalidate(mDirtyRect);
+        }
+    }
+
+    /**
+     * Give the scroll position to {@link #mScrollProgressListener} on the next frame.
+     * The scroll callbacks of a frame are coalesced into a single dispatch.
+     */
+    private void dispatchScrollProgress() {
+        if (mScrollProgressListener != null && !mScrollProgressPending) {
+            mScrollProgressPending = true;
+            ViewCompat.postOnAnimation(this, mScrollProgressRunnable);
+        }
+    }
+
+    /**
+     * Add the parts depending on the scroll position to a dirty region: the underline and the
+     * icons of {@link #mScrollCurrentPage} and the next page, the only ones
+     * {@link #getIconOffsetY(int)} can move.
+     *
+     * @param dirty the region to extend
+     */
+    private void unionMovingParts(Rect dirty) {
+        if (mGeometryDirty || mIconBounds.length == 0) {
+            return;
+        }
+        updateIndicatorBounds();
+        dirty.union(
+                (int) Math.floor(Math.min(mIndicatorFrom.left, mIndicatorTo.left)),
+                (int) Math.floor(Math.min(mIndicatorFrom.top, mIndicatorTo.top)),
+                (int) Math.ceil(Math.max(mIndicatorFrom.right, mIndicatorTo.right)),
+                (int) Math.ceil(Math.max(mIndicatorFrom.bottom, mIndicatorTo.bottom))
+        );
+        unionIconBounds(dirty, mScrollCurrentPage);
+        unionIconBounds(dirty, mScrollCurrentPage + 1);
+        unionLabelBounds(dirty, mScrollCurrentPage);
+        unionLabelBounds(dirty, mScrollCurrentPage + 1);
+    }
+
+    private void unionLabelBounds(Rect dirty, int index) {
+        if (index < 0 || index >= mTabLabels.length || mTabLabels[index] == null) {
+            return;
+        }
+        Rect tabBounds = mTabBounds[index];
+        dirty.union(
+                tabBounds.left,
+                (int) (mLabelBaseline + mLabelFontMetrics.ascent),
+                tabBounds.right,
+                (int) Math.ceil(mLabelBaseline + mLabelFontMetrics.descent)
+        );
+    }
+
+    private void unionIconBounds(Rect dirty, int index) {
+        if (index < 0 || index >= mIconBounds.length) {
+            return;
+        }
+        Rect iconBounds = mIconBounds[index];
+        // Take the highest position of the icon into account, see getIconOffsetY()
+        int lift = (int) Math.ceil(getPaddingTop() / 4f);
+        dirty.union(
+                iconBounds.left,
+                iconBounds.top - lift,
+                iconBounds.right,
+                iconBounds.bottom
+        );
+        unionBadgeBounds(dirty, index, lift);
+    }
+
+    /**
+     * Compute the bounds of the indicator on the scrolled page and on the next one, given to the
+     * {@link IndicatorRenderer}. With {@link #LINE_FULL_WIDTH}, the width of the indicator is the
+     * width of each tab.
+     */
+    private void updateIndicatorBounds() {
+        int page = mScrollCurrentPage;
+        setIndicatorBounds(mIndicatorFrom, page);
+        if (page + 1 < mGeometry.getItemCount()) {
+            setIndicatorBounds(mIndicatorTo, page + 1);
+        } else {
+            mIndicatorTo.set(mIndicatorFrom);
+        }
+    }
+
+    private void setIndicatorBounds(RectF bounds, int page) {
+        float center = mGeometry.getUnderlineCenterX(page, 0f);
+        float width = mGeometry.getUnderlineWidth(mUnderlineMode, mUnderlineWidth, page, 0f);
+        bounds.set(
+                center - width / 2f,
+                getHeight() - mUnderlineHeight,
+                center + width / 2f,
+                getHeight()
+        );
+    }
+
+    /**
+     * Get the offset y in pixel of the icon at a specific page.
+     * The default behavior is to move vertically up to 'paddingTop / 2' pixels from the center
+     * position.
+     *
+     * @param iconPage the page of the icon
+     * @return an y offset at which the icon should be draw
+     */
+    private int getIconOffsetY(int iconPage) {
+        return MenuGeometry.getIconOffsetY(iconPage, mScrollCurrentPage, mScrollPageOffset,
+                mCurrentPage, mLastPage, getPaddingTop());
+    }
+
+    @Override
+    public void invalidate() {
+        // mMetrics is null while the constructor of View runs
+        if (mMetrics != null) {
+            mMetrics.onInvalidate();
+        }
+        super.invalidate();
+    }
+
+    @Override
+    public void invalidate(Rect dirty) {
+        if (mMetrics != null) {
+            mMetrics.onInvalidate();
+        }
+        super.invalidate(dirty);
+    }
+
+    @Override
+    public void invalidate(int l, int t, int r, int b) {
+        if (mMetrics != null) {
+            mMetrics.onInvalidate();
+        }
+        super.invalidate(l, t, r, b);
+    }
+
+    /**
+     * Get the refresh period of the display showing this view, 60Hz when unknown.
+     *
+     * @return the duration of a frame in nanoseconds
+     */
+    private long getFrameIntervalNanos() {
+        float refreshRate = 0f;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            Display display = getDisplay();
+            if (display != null) {
+                refreshRate = display.getRefreshRate();
+            }
+        }
+        if (refreshRate <= 0f) {
+            refreshRate = 60f;
+        }
+        return (long) (1000000000L / refreshRate);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        long start = mMetrics.beginSection(MenuMetrics.SECTION_MEASURE);
+        try {
+            setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), getDesiredHeight());
+        } finally {
+            mMetrics.endSection(MenuMetrics.SECTION_MEASURE, start);
+        }
+    }
+
+    /**
+     * Compute the height wanted by the menu.
+     *
+     * @return the height of the icons, of the labels if any and of the padding
+     */
+    private int getDesiredHeight() {
+        float labelHeight = mHasLabels
+                ? mLabelSpacing + mLabelFontMetrics.descent - mLabelFontMetrics.ascent
+                : 0f;
+        return (int) Math.ceil(getPaddingTop() + mItemSize + labelHeight + getPaddingBottom());
+    }
+
+    /**
+     * Request a layout only if the height of the view changes, after a change of the icon size
+     * or of the labels. The other setters only refresh the cached geometry.
+     */
+    private void updateMeasuredSize() {
+        if (getDesiredHeight() != getMeasuredHeight()) {
+            requestLayout();
+        }
+    }
+
+    /**
+     * Measure the underline width, which depends on the underline mode and the icon size.
+     */
+    private void updateUnderlineWidth() {
+        mUnderlineWidth = MenuGeometry.measureUnderlineWidth(
+                mUnderlineMode, mItemSize, mUnderlineWidth);
+    }
+
+    /**
+     * Open a batch of {@link #mState} until the next animation frame: the scroll and the
+     * selection reported by the ViewPager during a frame are notified and drawn once.
+     * While the view is detached, the changes are notified at once.
+     */
+    private void beginViewPagerBatch() {
+        if (mViewPagerBatchOpen || !mStateObserved) {
+            return;
+        }
+        mViewPagerBatchOpen = true;
+        mState.beginBatch();
+        ViewCompat.postOnAnimation(this, mViewPagerBatchRunnable);
+    }
+
+    private void endViewPagerBatch() {
+        if (mViewPagerBatchOpen) {
+            mViewPagerBatchOpen = false;
+            removeCallbacks(mViewPagerBatchRunnable);
+            mState.endBatch();
+        }
+    }
+
+    /**
+     * Callback of {@link #setCurrentPage(int)}.
+     */
+    private void setInternalPageScrolled(float page) {
+        mState.setScrollPosition(page);
+    }
+
+    /**
+     * Copy the selection and the scroll position of {@link #mState}, redrawing what moved.
+     */
+    private void applyState() {
+        beginScrollUpdate();
+        mCurrentPage = mState.getCurrentPage();
+        mLastPage = mState.getLastPage();
+        mScrollCurrentPage = mState.getScrollPage();
+        mScrollPageOffset = mState.getScrollOffset();
+        endScrollUpdate();
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        if (mScrubEnabled ? onScrubTouchEvent(event) : onPanTouchEvent(event)) {
+            return true;
+        }
+        mLastTouchX = event.getX() + getScrollX();
+        boolean handled = super.dispatchTouchEvent(event);
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                setPageAboutToChange(getTabIndexAt(mLastTouchX));
+                // true if we have at least one item
+                return (mViewPager != null && mTabs != null && !mTabs.isEmpty())
+                        || handled;
+            case MotionEvent.ACTION_MOVE:
+                setPageAboutToChange(isInside(event) ? getTabIndexAt(mLastTouchX) : -1);
+                return handled;
+            case MotionEvent.ACTION_CANCEL:
+                setPageAboutToChange(-1);
+                return handled;
+            case MotionEvent.ACTION_UP:
+                int page = isInside(event) ? getTabIndexAt(mLastTouchX) : -1;
+                // The current page is never announced
+                if (page < 0
+                        || (page != mPageAboutToChange && page != mState.getCurrentPage())) {
+                    // Released outside of the menu, or on another tab than the announced one:
+                    // the press is canceled, as announced by the cancel event
+                    setPageAboutToChange(-1);
+                    return handled;
+                }
+                // The page change follows, no cancel event
+                mPageAboutToChange = -1;
+
+                if (mViewPager != null) {
+                    mViewPager.setCurrentItem(page);
+                } else {
+                    setCurrentPage(page);
+                }
+                return true;
+            default:
+                return handled;
+        }
+    }
+
+    /**
+     * Follow a scrub gesture, see {@link #setScrubEnabled(boolean)}.
+     *
+     * @param event the touch event
+     * @return true if the event is consumed by the scrub, false to handle it as a tap
+     */
+    private boolean onScrubTouchEvent(MotionEvent event) {
+        if (mTabs == null || mTabs.isEmpty()) {
+            return false;
+        }
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mVelocityTracker.clear();
+                mVelocityTracker.addMovement(event);
+                mScrubDownX = event.getX();
+                return false;
+            case MotionEvent.ACTION_MOVE:
+                mVelocityTracker.addMovement(event);
+                if (!mScrubbing) {
+                    float distance = event.getX() - mScrubDownX;
+                    if (Math.abs(distance) < mTouchSlop || !startScrub()) {
+                        return false;
+                    }
+                    // Start from the slop, the content does not jump
+                    mScrubLastX = mScrubDownX + Math.signum(distance) * mTouchSlop;
+                }
+                scrubBy(event.getX() - mScrubLastX);
+                mScrubLastX = event.getX();
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (!mScrubbing) {
+                    return false;
+                }
+                mVelocityTracker.addMovement(event);
+                mVelocityTracker.computeCurrentVelocity(1000, mMaxFlingVelocity);
+                endScrub(mVelocityTracker.getXVelocity());
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                if (!mScrubbing) {
+                    return false;
+                }
+                endScrub(0f);
+                return true;
+            default:
+                return mScrubbing;
+        }
+    }
+
+    /**
+     * Start a scrub once the finger moved past the touch slop.
+     *
+     * @return true if the scrub started, false if the ViewPager is already dragged
+     */
+    private boolean startScrub() {
+        if (mViewPager != null && !mViewPager.beginFakeDrag()) {
+            return false;
+        }
+        mScrubbing = true;
+        cancelPageAnimation();
+        mScrubPosition = mState.getScrollPosition();
+        // The gesture is not a tap anymore
+        setPressed(false);
+        cancelLongPress();
+        ViewParent parent = getParent();
+        if (parent != null) {
+            parent.requestDisallowInterceptTouchEvent(true);
+        }
+        return true;
+    }
+
+    /**
+     * Move the scroll position by a distance, converted to pages with the width of the tab
+     * under the underline so the underline follows the finger.
+     *
+     * @param dx the horizontal distance in pixel
+     */
+    private void scrubBy(float dx) {
+        float tabWidth = getScrubTabWidth();
+        if (tabWidth <= 0f) {
+            return;
+        }
+        float position = clampPage(mScrubPosition + dx / tabWidth);
+        float delta = position - mScrubPosition;
+        mScrubPosition = position;
+        if (mViewPager != null) {
+            // The menu follows through onPageScrolled()
+            int pageWidth = mViewPager.getWidth() - mViewPager.getPaddingLeft()
+                    - mViewPager.getPaddingRight() + mViewPager.getPageMargin();
+            mViewPager.fakeDragBy(-delta * pageWidth);
+        } else {
+            trackScroll(position);
+            setInternalPageScrolled(position);
+        }
+        setPageAboutToChange(Math.round(position));
+    }
+
+    /**
+     * Settle on a page at the end of a scrub.
+     *
+     * @param velocityX the horizontal velocity of the finger in pixels per second
+     */
+    private void endScrub(float velocityX) {
+        mScrubbing = false;
+        float tabWidth = getScrubTabWidth();
+        float velocity = tabWidth > 0f ? velocityX / tabWidth : 0f;
+        int target;
+        if (Math.abs(velocityX) >= mMinFlingVelocity && velocity != 0f) {
+            // Go at least to the next page in the direction of the fling
+            float projected = mScrubPosition + velocity * FLING_PROJECTION;
+            target = (int) (velocity > 0f ? Math.ceil(projected) : Math.floor(projected));
+        } else {
+            target = Math.round(mScrubPosition);
+        }
+        target = Math.max(0, Math.min(target, mTabs.size() - 1));
+
+        if (target != mPageAboutToChange) {
+            setPageAboutToChange(-1);
+        }
+        // The page change follows, no cancel event
+        mPageAboutToChange = -1;
+
+        if (mViewPager != null) {
+            mViewPager.endFakeDrag();
+            mViewPager.setCurrentItem(target);
+        } else {
+            mTrackedScrollVelocity = velocity;
+            mTrackedScrollTime = SystemClock.uptimeMillis();
+            if (target == mState.getCurrentPage()) {
+                startPageAnimation(mScrubPosition, target);
+            } else {
+                setCurrentPage(target);
+            }
+        }
+    }
+
+    /**
+     * Stop a scrub without selecting a page, the menu stays where it is.
      */
-    public void setupWith(ViewPager viewPager) {
-        unregisterDrawableCallback();
-        mViewPager = viewPager;
-        mViewPager.addOnPageChangeListener(mViewPagerPageChangeListener);
-        mScrollCurrentPage = mViewPager.getCurrentItem();
-        mScrollPageOffset = 0f;
-        mLastPage = mViewPager.getCurrentItem();
-        mCurrentPage = mViewPager.getCurrentItem();
-
-        PagerAdapter vpAdapter = mViewPager.getAdapter();
-        if (vpAdapter == null || !(mViewPager.getAdapter() instanceof Adapter)) {
-            throw new IllegalArgumentException("Adapter not implemented");
-        }
-        Adapter adapter = (Adapter) vpAdapter;
-        mTabs = new ArrayList<>();
-        for (int i = 0; i < vpAdapter.getCount(); ++i) {
-            mTabs.add(new Tab(
-                    getContext(),
-                    adapter.getMenuIcon(i),
-                    getCopyOfDefaultTabBackground()
-            ));
+    private void cancelScrub() {
+        if (!mScrubbing) {
+            return;
+        }
+        mScrubbing = false;
+        setPageAboutToChange(-1);
+        if (mViewPager != null && mViewPager.isFakeDragging()) {
+            mViewPager.endFakeDrag();
         }
+    }
 
-        if (mListener != null) {
-            mListener.onMenuPageChanged(mCurrentPage);
+    private float getScrubTabWidth() {
+        if (mGeometryDirty || mGeometry.getItemCount() == 0) {
+            return 0f;
         }
-        invalidate();
+        int page = Math.max(0, Math.min((int) mScrubPosition, mGeometry.getItemCount() - 1));
+        return mGeometry.getTabWidth(page);
     }
 
     /**
-     * Setup this {@link BottomMenuView} by providing a list of {@link Tab}.
-     * You can implements {@link Listener} and use {@link #setListener(Listener)} to handle events.
+     * Follow a pan gesture of a scrollable menu, see {@link #setMinTabWidth(int)}.
      *
-     * @param tabs The list of tabs
+     * @param event the touch event
+     * @return true if the event is consumed by the pan, false to handle it as a tap
      */
-    public void setupWith(@Nullable List<Tab> tabs) {
-        if (mViewPager != null) {
-            mViewPager.removeOnPageChangeListener(mViewPagerPageChangeListener);
-            mViewPager = null;
+    private boolean onPanTouchEvent(MotionEvent event) {
+        if (!mStripPanning && !isStripScrollable()) {
+            return false;
         }
-        unregisterDrawableCallback();
-        mScrollCurrentPage = 0;
-        mScrollPageOffset = 0f;
-        mLastPage = 0;
-        mCurrentPage = 0;
-
-        mTabs = tabs;
-
-        if (mTabs != null) {
-            for (Tab tab : mTabs) {
-                Drawable drawable = tab.getBackgroundDrawable();
-                if (drawable != null) {
-                    drawable.setCallback(this);
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mVelocityTracker.clear();
+                mVelocityTracker.addMovement(event);
+                mStripDownX = event.getX();
+                mStripLastX = mStripDownX;
+                if (!mStripScroller.isFinished()) {
+                    // The touch stops the fling, it is not a tap
+                    mStripScroller.abortAnimation();
+                    startPan();
+                    return true;
                 }
-            }
+                return false;
+            case MotionEvent.ACTION_MOVE:
+                mVelocityTracker.addMovement(event);
+                if (!mStripPanning) {
+                    float distance = event.getX() - mStripDownX;
+                    if (Math.abs(distance) < mTouchSlop) {
+                        return false;
+                    }
+                    startPan();
+                    // Start from the slop, the content does not jump
+                    mStripLastX = mStripDownX + Math.signum(distance) * mTouchSlop;
+                }
+                // Keep the fraction of pixel for the next move
+                int dx = (int) (mStripLastX - event.getX());
+                mStripLastX -= dx;
+                scrollStripTo(getScrollX() + dx);
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (!mStripPanning) {
+                    return false;
+                }
+                mVelocityTracker.addMovement(event);
+                mVelocityTracker.computeCurrentVelocity(1000, mMaxFlingVelocity);
+                endPan(mVelocityTracker.getXVelocity());
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                if (!mStripPanning) {
+                    return false;
+                }
+                endPan(0f);
+                return true;
+            default:
+                return mStripPanning;
         }
+    }
 
-        if (mListener != null) {
-            mListener.onMenuPageChanged(mCurrentPage);
+    private boolean isStripScrollable() {
+        if (mTabs == null || mTabs.isEmpty()) {
+            return false;
         }
-        invalidate();
+        if (mGeometryDirty) {
+            updateGeometry();
+        }
+        return mGeometry.getMaxScroll() > 0;
     }
 
-    private void unregisterDrawableCallback() {
-        if (mTabs != null) {
-            for (Tab tab : mTabs) {
-                Drawable drawable = tab.getBackgroundDrawable();
-                if (drawable != null) {
-                    drawable.setCallback(null);
-                }
-            }
+    private void startPan() {
+        mStripPanning = true;
+        mStripPanned = true;
+        // The gesture is not a tap anymore
+        setPressed(false);
+        cancelLongPress();
+        setPageAboutToChange(-1);
+        ViewParent parent = getParent();
+        if (parent != null) {
+            parent.requestDisallowInterceptTouchEvent(true);
         }
     }
 
-    private Drawable getCopyOfDefaultTabBackground() {
-        if (mDefaultTabBackground != null) {
-            Drawable.ConstantState state = mDefaultTabBackground.getConstantState();
-            if (state != null) {
-                Drawable drawable = state.newDrawable();
-                drawable.setCallback(this);
-                return drawable;
-            }
+    /**
+     * Fling the strip at the end of a pan, see {@link #computeScroll()}.
+     *
+     * @param velocityX the horizontal velocity of the finger in pixels per second
+     */
+    private void endPan(float velocityX) {
+        mStripPanning = false;
+        if (Math.abs(velocityX) >= mMinFlingVelocity) {
+            mStripScroller.fling(getScrollX(), 0, (int) -velocityX, 0,
+                    0, mGeometry.getMaxScroll(), 0, 0);
+            ViewCompat.postInvalidateOnAnimation(this);
         }
-        return null;
     }
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-
-        if (mTabs == null) {
-            return;
+    public void computeScroll() {
+        if (mStripScroller.computeScrollOffset()) {
+            scrollStripTo(mStripScroller.getCurrX());
+            ViewCompat.postInvalidateOnAnimation(this);
         }
-
-        int itemCount = mTabs.size();
-        int widthPerItem = getWidth() / itemCount;
-
-        // Draw icons and backgrounds
-        for (int i = 0; i < itemCount; ++i) {
-            Tab tab = mTabs.get(i);
-
-            float offsetX = (widthPerItem * i) + (widthPerItem / 2) - mItemSize / 2;
-            float offsetY = getIconOffsetY(i);
-
-            Drawable background = tab.getBackgroundDrawable();
-            if (background != null) {
-                background.setBounds(
-                        i * widthPerItem, // left
-                        0, // top
-                        (i + 1) * widthPerItem, // right
-                        getMeasuredHeight() // bottom
-                );
-                background.draw(canvas);
-            }
-
-            Drawable iconDrawable = tab.getIconDrawable();
-            iconDrawable.setBounds(
-                    (int) offsetX,
-                    (int) offsetY,
-                    (int) (offsetX + mItemSize),
-                    (int) (offsetY + mItemSize)
-            );
-            iconDrawable.draw(canvas);
-        }
-
-        // Draw underline
-        int offsetX = (int) ((widthPerItem * mScrollCurrentPage)
-                + (widthPerItem / 2f)
-                - (mUnderlineWidth / 2f)
-                + (widthPerItem * mScrollPageOffset));
-        int offsetY = (int) (getHeight() - mUnderlineHeight);
-        mUnderlineDrawable.setBounds(
-                offsetX,
-                offsetY,
-                (int) (offsetX + mUnderlineWidth),
-                getHeight()
-        );
-        mUnderlineDrawable.draw(canvas);
     }
 
     /**
-     * Get the offset y in pixel of the icon at a specific page.
-     * The default behavior is to move vertically up to 'paddingTop / 2' pixels from the center
-     * position.
+     * Scroll a panned strip, in the bounds of the tabs.
      *
-     * @param iconPage the page of the icon
-     * @return an y offset at which the icon should be draw
+     * @param x the new horizontal scroll
      */
-    private int getIconOffsetY(int iconPage) {
-        if ((iconPage != mScrollCurrentPage && iconPage != mScrollCurrentPage + 1)
-                || (iconPage != mCurrentPage && iconPage != mLastPage)) {
-            return getPaddingTop();
+    private void scrollStripTo(int x) {
+        int scrollX = Math.max(0, Math.min(x, mGeometry.getMaxScroll()));
+        if (scrollX != getScrollX()) {
+            scrollTo(scrollX, 0);
+            updateVisibleTabs();
         }
-        @FloatRange(from = 0f, to = 1f) float percent
-                = (iconPage == mScrollCurrentPage)
-                ? 1f - mScrollPageOffset
-                : mScrollPageOffset;
-        return (int) (getPaddingTop() - (getPaddingTop() / 4f) * percent);
     }
 
     @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        setMeasuredDimension(
-                MeasureSpec.getSize(widthMeasureSpec),
-                (int) (getPaddingTop() + mItemSize + getPaddingBottom())
-        );
-
-        // Measure the underline width
-        switch (mUnderlineMode) {
-            case LINE_AUTO:
-                mUnderlineWidth = mItemSize * 2;
-                break;
-            case LINE_FULL_WIDTH:
-                if (mTabs == null) {
-                    break;
-                }
-                int itemCount = mTabs.size();
-                mUnderlineWidth = getMeasuredWidth() / itemCount;
+    public boolean onHoverEvent(MotionEvent event) {
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_HOVER_ENTER:
+            case MotionEvent.ACTION_HOVER_MOVE:
+                setPageAboutToChange(getTabIndexAt(event.getX() + getScrollX()));
                 break;
-            case LINE_CUSTOM:
-                // nothing to do here
+            case MotionEvent.ACTION_HOVER_EXIT:
+                setPageAboutToChange(-1);
                 break;
             default:
-                throw new IllegalArgumentException("Invalid mode");
+                break;
         }
+        return super.onHoverEvent(event);
     }
 
-    /**
-     * Callback of {@link #setCurrentPage(int)}.
-     */
-    @SuppressWarnings("unused")
-    private void setInternalPageScrolled(float page) {
-        mScrollCurrentPage = (int) Math.floor(page);
-        mScrollPageOffset = page - mScrollCurrentPage;
-        invalidate();
+    private boolean isInside(MotionEvent event) {
+        return event.getX() >= 0 && event.getX() < getWidth()
+                && event.getY() >= 0 && event.getY() < getHeight();
     }
 
-    @Override
-    public boolean dispatchTouchEvent(MotionEvent event) {
-        mLastTouchX = event.getX();
-        boolean handled = super.dispatchTouchEvent(event);
-        switch (event.getAction()) {
-            case MotionEvent.ACTION_DOWN:
-                // true if we have at least one item
-                return (mViewPager != null && mTabs != null && !mTabs.isEmpty())
-                        || handled;
-            case MotionEvent.ACTION_UP:
-                int widthPerItem = getWidth() / mTabs.size();
-                int page = (int) (event.getX() / widthPerItem);
-
-                if (mViewPager != null) {
-                    mViewPager.setCurrentItem(page);
-                } else {
-                    setCurrentPage(page);
-                }
-                return true;
-            default:
-                return handled;
+    /**
+     * Notify {@link #mPageAboutToChangeListener} of the page under the finger or the pointer.
+     * The previous page, if any, is canceled first. The current page is never announced.
+     *
+     * @param page the page under the finger or -1
+     */
+    private void setPageAboutToChange(int page) {
+        if (page == mState.getCurrentPage()) {
+            page = -1;
+        }
+        if (page == mPageAboutToChange) {
+            return;
+        }
+        int previousPage = mPageAboutToChange;
+        mPageAboutToChange = page;
+        if (mPageAboutToChangeListener != null) {
+            if (previousPage >= 0) {
+                mPageAboutToChangeListener.onMenuPageChangeCanceled(previousPage);
+            }
+            if (page >= 0) {
+                mPageAboutToChangeListener.onMenuPageAboutToChange(page);
+            }
         }
     }
 
@@ -597,32 +3066,107 @@ public class BottomMenuView extends View {
      */
     public void setCurrentPage(final int position, boolean animate) {
         if (animate) {
-            ObjectAnimator animator = ObjectAnimator.ofFloat(
-                    this,
-                    "internalPageScrolled",
-                    mCurrentPage,
-                    position
-            );
-            animator.setDuration(150);
-            animator.setInterpolator(new DecelerateInterpolator());
-
+            // Start from the position reached by a running animation, if any
+            float from = mState.getScrollPosition();
             internalChangePage(position);
-            animator.start();
+            startPageAnimation(from, position);
         } else {
-            mScrollCurrentPage = position;
-            mScrollPageOffset = 0;
+            cancelPageAnimation();
+            // The scroll position and the selection are drawn once
+            mState.beginBatch();
+            setInternalPageScrolled(position);
             internalChangePage(position);
+            mState.endBatch();
+        }
+    }
+
+    /**
+     * Animate the scroll position to a page, with the spring if enabled.
+     * A running spring is only retargeted, the other animations restart from the given position.
+     *
+     * @param from the current scroll position
+     * @param to the page to scroll to
+     */
+    private void startPageAnimation(float from, float to) {
+        if (mPageSpring == null) {
+            mPageAnimator.cancel();
+            mPageAnimationFrom = from;
+            mPageAnimationTo = to;
+            mPageAnimator.start();
+            return;
+        }
+        if (!mPageSpringRunning) {
+            mPageSpring.setPosition(from);
+            mPageSpring.setVelocity(getTrackedScrollVelocity());
+            mPageSpringRunning = true;
+            mPageSpringFrameTime = System.nanoTime();
+            if (mMetrics.isListening()) {
+                mMetrics.onAnimationStart(getFrameIntervalNanos());
+            }
+            ViewCompat.postOnAnimation(this, mPageSpringRunnable);
+        }
+        mPageSpring.setTarget(to);
+    }
+
+    private void cancelPageAnimation() {
+        mPageAnimator.cancel();
+        stopPageSpring();
+    }
+
+    /**
+     * Stop the spring where it is, the scroll position is then set by the caller.
+     */
+    private void stopPageSpring() {
+        if (mPageSpringRunning) {
+            mPageSpringRunning = false;
+            removeCallbacks(mPageSpringRunnable);
+            mMetrics.onAnimationEnd();
+        }
+    }
+
+    /**
+     * Measure the velocity of the scroll driven by the ViewPager.
+     *
+     * @param position the scroll position given by the ViewPager
+     */
+    private void trackScroll(float position) {
+        long now = SystemClock.uptimeMillis();
+        if (mTrackedScrollTime != 0 && now > mTrackedScrollTime) {
+            mTrackedScrollVelocity = (position - mTrackedScrollPosition) * 1000f
+                    / (now - mTrackedScrollTime);
+        }
+        mTrackedScrollPosition = position;
+        mTrackedScrollTime = now;
+    }
+
+    /**
+     * Get the velocity of the last scroll reported by the ViewPager.
+     *
+     * @return the velocity of the ViewPager in pages per second, 0 if it did not scroll recently
+     */
+    private float getTrackedScrollVelocity() {
+        if (SystemClock.uptimeMillis() - mTrackedScrollTime > SCROLL_VELOCITY_TIMEOUT) {
+            return 0f;
         }
+        return mTrackedScrollVelocity;
+    }
+
+    /**
+     * Limit a scroll position to the tabs, the spring can overshoot the first and the last ones.
+     *
+     * @return the scroll position limited to the tabs
+     */
+    private float clampPage(float position) {
+        int lastPage = mTabs == null ? 0 : mTabs.size() - 1;
+        return Math.max(0f, Math.min(position, Math.max(0, lastPage)));
     }
 
     private void internalChangePage(int position) {
-        mLastPage = mCurrentPage;
-        mCurrentPage = position;
+        mState.selectPage(position);
 
         if (mListener != null) {
             mListener.onMenuPageChanged(position);
         }
-        invalidate();
     }
 
     /**
@@ -632,20 +3176,143 @@ public class BottomMenuView extends View {
         mListener = listener;
     }
 
+    /**
+     * Draw and update a state shared with other views, or kept outside of this view to restore
+     * the selection of a new view. The view takes the selection of the state, then updates it
+     * on each page change and scroll. With a ViewPager, the ViewPager stays the source of the
+     * selection.
+     *
+     * @param state the state to observe, a state owned by the view by default
+     */
+    public void setState(@NonNull BottomMenuState state) {
+        if (state == mState) {
+            return;
+        }
+        cancelPageAnimation();
+        endViewPagerBatch();
+        if (mStateObserved) {
+            mState.removeObserver(mStateObserver);
+            state.addObserver(mStateObserver);
+        }
+        mState = state;
+        applyState();
+    }
+
+    /**
+     * Get the state drawn by this view, see {@link #setState(BottomMenuState)}.
+     *
+     * @return the selection and the scroll position drawn by this view
+     */
+    @NonNull
+    public BottomMenuState getState() {
+        return mState;
+    }
+
+    /**
+     * Be notified as soon as a tab is pressed or hovered, before the page changes on release.
+     * Useful to start loading the content of a page during the press.
+     *
+     * @param listener a listener or null.
+     */
+    public void setOnPageAboutToChangeListener(@Nullable OnPageAboutToChangeListener listener) {
+        mPageAboutToChangeListener = listener;
+    }
+
+    /**
+     * Follow the position of the underline, during the swipes of the {@link ViewPager} and the
+     * animations of {@link #setCurrentPage(int)}. The listener is called at most once per frame.
+     *
+     * @param listener a listener or null.
+     */
+    public void setOnScrollProgressListener(@Nullable OnScrollProgressListener listener) {
+        mScrollProgressListener = listener;
+        mDispatchedScrollPosition = Float.NaN;
+        dispatchScrollProgress();
+    }
+
     /**
      * Model a of Tab used by {@link BottomMenuView}.
      */
     public static class Tab {
         private @Nullable Drawable mDrawable;
-        private @NonNull Drawable mIconDrawable;
+        private @Nullable Drawable mIconDrawable;
+        private @DrawableRes int mIconRes;
+        private float mWeight = 1f;
+        private int mBadge = BADGE_NONE;
+        private @Nullable CharSequence mLabel;
+
+        /**
+         * Context used to load a deferred icon, released once the icon is loaded.
+         */
+        private @Nullable Context mIconContext;
 
         public Tab(Context context, @DrawableRes int icon) {
-            mIconDrawable = ContextCompat.getDrawable(context, icon);
+            this(context, icon, null, false);
         }
 
         public Tab(Context context, @DrawableRes int icon, @Nullable Drawable drawable) {
+            this(context, icon, drawable, false);
+        }
+
+        /**
+         * @param deferIconLoading true to load the icon later, when it is first drawn or in
+         *                         background. See {@link BottomMenuView#setIconLoading(int)}.
+         */
+        public Tab(Context context, @DrawableRes int icon, @Nullable Drawable drawable,
+                   boolean deferIconLoading) {
             mDrawable = drawable;
-            mIconDrawable = ContextCompat.getDrawable(context, icon);
+            mIconRes = icon;
+            if (deferIconLoading) {
+                mIconContext = context;
+            } else {
+                mIconDrawable = IconCache.getInstance(context).getDrawable(context, icon);
+            }
+        }
+
+        /**
+         * Change the width of this tab relatively to the other tabs, 1 by default.
+         * Has to be called before the tabs are given to the {@link BottomMenuView}.
+         *
+         * @param weight a positive weight
+         * @return this tab
+         */
+        public Tab setWeight(@FloatRange(from = 0f, fromInclusive = false) float weight) {
+            if (weight <= 0f) {
+                throw new IllegalArgumentException("Invalid weight");
+            }
+            mWeight = weight;
+            return this;
+        }
+
+        public float getWeight() {
+            return mWeight;
+        }
+
+        /**
+         * Change the label drawn under the icon, ellipsized to the width of the tab.
+         * Has to be called before the tabs are given to the {@link BottomMenuView}, see
+         * {@link BottomMenuView#setLabel(int, CharSequence)} otherwise.
+         *
+         * @param label a label or null
+         * @return this tab
+         */
+        public Tab setLabel(@Nullable CharSequence label) {
+            mLabel = label;
+            return this;
+        }
+
+        @Nullable
+        public CharSequence getLabel() {
+            return mLabel;
+        }
+
+        /**
+         * Get the badge of this tab.
+         *
+         * @return the badge of this tab, see {@link BottomMenuView#setBadge(int, int)}
+         */
+        public int getBadge() {
+            return mBadge;
         }
 
         @Nullable
@@ -653,10 +3320,43 @@ public class BottomMenuView extends View {
             return mDrawable;
         }
 
-        @NonNull
+        /**
+         * Get the icon, null if it has been deferred and is not loaded yet.
+         *
+         * @return the icon or null
+         */
+        @Nullable
         Drawable getIconDrawable() {
             return mIconDrawable;
         }
+
+        @Nullable
+        Drawable loadIcon() {
+            if (mIconDrawable == null && mIconContext != null) {
+                setIconDrawable(
+                        IconCache.getInstance(mIconContext).getDrawable(mIconContext, mIconRes)
+                );
+            }
+            return mIconDrawable;
+        }
+
+        void setIconDrawable(@Nullable Drawable icon) {
+            mIconDrawable = icon;
+            mIconContext = null;
+        }
+    }
+
+    /**
+     * Text of a count drawn in a badge, with its measured width.
+     */
+    private static final class BadgeText {
+        final String mText;
+        final float mWidth;
+
+        BadgeText(String text, float width) {
+            mText = text;
+            mWidth = width;
+        }
     }
 
     public interface Adapter {
@@ -666,4 +3366,58 @@ public class BottomMenuView extends View {
     public interface Listener {
         void onMenuPageChanged(int page);
     }
+
+    public interface OnPageAboutToChangeListener {
+        /**
+         * Called when a tab other than the current one is pressed or hovered.
+         *
+         * @param page the page of the tab
+         */
+        void onMenuPageAboutToChange(int page);
+
+        /**
+         * Called when the touch is canceled, leaves the view or moves to another tab, or when the
+         * pointer stops hovering the tab.
+         *
+         * @param page the page given to {@link #onMenuPageAboutToChange(int)}
+         */
+        void onMenuPageChangeCanceled(int page);
+    }
+
+    public interface OnScrollProgressListener {
+        /**
+         * @param position the page position of the underline, 1.5f when it is halfway between
+         *                 the pages 1 and 2
+         */
+        void onMenuScrolled(float position);
+    }
+
+    /**
+     * Receive the performance metrics of a {@link BottomMenuView} on the main thread.
+     * See {@link #setMetricsListener(MetricsListener)}.
+     */
+    public interface MetricsListener {
+        void onDraw(long durationNanos);
+
+        void onMeasure(long durationNanos);
+
+        void onSetup(long durationNanos);
+
+        void onDrawableStateChanged(long durationNanos);
+
+        /**
+         * Called at most once per second while the view is invalidated.
+         *
+         * @param invalidationsPerSecond the number of invalidations since the last call
+         */
+        void onInvalidationRate(int invalidationsPerSecond);
+
+        /**
+         * Called when an animation of {@link #setCurrentPage(int)} ends or is canceled.
+         *
+         * @param frameCount the number of frames drawn by the animation
+         * @param droppedFrameCount the estimated number of frames skipped by the animation
+         */
+        void onPageAnimationFrames(int frameCount, int droppedFrameCount);
+    }
 }
@@ -0,0 +1,233 @@
+package com.geronimostudios.bottommenuview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.annotation.DrawableRes;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.util.LruCache;
+
+/**
+ * Process-wide cache of the icons used by the {@link BottomMenuView} instances.
+ * The icons are kept as {@link Drawable.ConstantState}, so each view gets its own drawable
+ * sharing the decoded bitmap or vector data. Setting up a menu again, in another screen or
+ * after a configuration change, does not hit the resources for the icons already loaded.
+ * The cache is emptied when the system asks the application to trim its memory.
+ */
+public final class IconCache {
+
+    /**
+     * Default maximum size of the cache, in bytes.
+     */
+    private static final int DEFAULT_MAX_SIZE = 2 * 1024 * 1024;
+
+    private static IconCache sInstance;
+
+    private volatile LruCache<Key, Entry> mCache;
+
+    private IconCache() {
+        mCache = createCache(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Get the cache shared by every {@link BottomMenuView}.
+     *
+     * @param context any context, only its application context is kept
+     * @return the cache
+     */
+    public static synchronized IconCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new IconCache();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                context.getApplicationContext()
+                        .registerComponentCallbacks(new TrimMemoryCallbacks(sInstance));
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Get an icon, from the cache when it has already been loaded.
+     *
+     * @param context the context used to load the icon
+     * @param icon the resource of the icon
+     * @return a new drawable, which can share its state with other instances of the same icon
+     */
+    @Nullable
+    public Drawable getDrawable(Context context, @DrawableRes int icon) {
+        LruCache<Key, Entry> cache = mCache;
+        Resources res = context.getResources();
+        Key key = new Key(icon, res);
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            return entry.mState.newDrawable(res);
+        }
+
+        Drawable drawable = ContextCompat.getDrawable(context, icon);
+        if (drawable != null) {
+            Drawable.ConstantState state = drawable.getConstantState();
+            // Drawables depending on the theme of the context can not be shared
+            if (state != null && !canApplyTheme(state)) {
+                cache.put(key, new Entry(state, getByteCount(drawable)));
+            }
+        }
+        return drawable;
+    }
+
+    /**
+     * Change the maximum size of the cache. The cache is emptied.
+     *
+     * @param maxSize the maximum size in bytes
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        mCache.evictAll();
+        mCache = createCache(maxSize);
+    }
+
+    /**
+     * Release the icons according to the level given by
+     * {@link ComponentCallbacks2#onTrimMemory(int)}.
+     * Called automatically from API 14.
+     *
+     * @param level the trim memory level
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Release every icon of the cache.
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    /**
+     * Count the icons found in the cache since it has been created.
+     *
+     * @return the number of icons found in the cache
+     */
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    /**
+     * Count the icons loaded from the resources since the cache has been created.
+     *
+     * @return the number of icons loaded from the resources
+     */
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    private static boolean canApplyTheme(Drawable.ConstantState state) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && state.canApplyTheme();
+    }
+
+    private static LruCache<Key, Entry> createCache(int maxSize) {
+        return new LruCache<Key, Entry>(maxSize) {
+            @Override
+            protected int sizeOf(Key key, Entry entry) {
+                return entry.mByteCount;
+            }
+        };
+    }
+
+    /**
+     * Estimate the memory used by a drawable.
+     */
+    private static int getByteCount(Drawable drawable) {
+        if (drawable instanceof BitmapDrawable) {
+            Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+            if (bitmap != null) {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+        }
+        // Vector and other drawables are rendered at their intrinsic size
+        return Math.max(1, drawable.getIntrinsicWidth() * drawable.getIntrinsicHeight() * 4);
+    }
+
+    /**
+     * Identify an icon for the configuration used to load it.
+     */
+    private static final class Key {
+        private final int mIcon;
+        private final int mDensityDpi;
+        private final int mUiMode;
+
+        Key(@DrawableRes int icon, Resources res) {
+            mIcon = icon;
+            mDensityDpi = res.getDisplayMetrics().densityDpi;
+            mUiMode = res.getConfiguration().uiMode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mIcon == key.mIcon
+                    && mDensityDpi == key.mDensityDpi
+                    && mUiMode == key.mUiMode;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mIcon;
+            result = 31 * result + mDensityDpi;
+            result = 31 * result + mUiMode;
+            return result;
+        }
+    }
+
+    private static final class Entry {
+        private final Drawable.ConstantState mState;
+        private final int mByteCount;
+
+        Entry(Drawable.ConstantState state, int byteCount) {
+            mState = state;
+            mByteCount = byteCount;
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static final class TrimMemoryCallbacks implements ComponentCallbacks2 {
+        private final IconCache mCache;
+
+        TrimMemoryCallbacks(IconCache cache) {
+            mCache = cache;
+        }
+
+        @Override
+        public void onTrimMemory(int level) {
+            mCache.trimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+            // ignore, the configuration is part of the keys
+        }
+
+        @Override
+        public void onLowMemory() {
+            mCache.clear();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.geronimostudios.bottommenuview;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+
+/**
+ * Draw the indicator of the current page of a {@link BottomMenuView}, the underline by default.
+ * See {@link BottomMenuView#setIndicatorRenderer(IndicatorRenderer)}.
+ * The renderer is called on each frame of a scroll: it must not allocate in
+ * {@link #draw(Canvas, RectF, RectF, float)}.
+ */
+public interface IndicatorRenderer {
+
+    /**
+     * Called with the underline color, see {@link BottomMenuView#setUnderlineColor(int)}.
+     *
+     * @param color the color of the indicator
+     */
+    void setColor(@ColorInt int color);
+
+    /**
+     * Draw the indicator while the menu is scrolled from a page to the next one.
+     * Only the union of from and to is redrawn: the indicator must stay inside it.
+     *
+     * @param canvas the canvas of the menu
+     * @param from the bounds of the indicator on the page scrolled from
+     * @param to the bounds of the indicator on the next page, equal to from on the last page
+     * @param offset the percentage scrolled from the page to the next one
+     */
+    void draw(@NonNull Canvas canvas, @NonNull RectF from, @NonNull RectF to, float offset);
+
+    /**
+     * A flat bar moving and resizing linearly with the scroll, the default renderer.
+     */
+    class Bar implements IndicatorRenderer {
+        protected final Paint mPaint = new Paint();
+        protected final RectF mRect = new RectF();
+
+        @Override
+        public void setColor(@ColorInt int color) {
+            mPaint.setColor(color);
+        }
+
+        @Override
+        public void draw(@NonNull Canvas canvas, @NonNull RectF from, @NonNull RectF to,
+                         float offset) {
+            interpolate(from, to, offset, mRect);
+            canvas.drawRect(mRect, mPaint);
+        }
+
+        protected static void interpolate(RectF from, RectF to, float offset, RectF out) {
+            out.set(
+                    from.left + (to.left - from.left) * offset,
+                    from.top + (to.top - from.top) * offset,
+                    from.right + (to.right - from.right) * offset,
+                    from.bottom + (to.bottom - from.bottom) * offset
+            );
+        }
+    }
+
+    /**
+     * A bar with fully rounded ends.
+     */
+    class Pill extends Bar {
+        public Pill() {
+            mPaint.setAntiAlias(true);
+        }
+
+        @Override
+        public void draw(@NonNull Canvas canvas, @NonNull RectF from, @NonNull RectF to,
+                         float offset) {
+            interpolate(from, to, offset, mRect);
+            float radius = (mRect.bottom - mRect.top) / 2f;
+            canvas.drawRoundRect(mRect, radius, radius, mPaint);
+        }
+    }
+
+    /**
+     * A bar filled with a horizontal gradient, from the underline color to a second color.
+     * The shader is created once and only moved to the bar with its local matrix.
+     */
+    class Gradient extends Bar {
+        private final Matrix mMatrix = new Matrix();
+        private Shader mShader;
+        private @ColorInt int mStartColor;
+        private @ColorInt int mEndColor;
+
+        /**
+         * Create a gradient starting from the color given by {@link #setColor(int)}.
+         *
+         * @param endColor the color of the right end of the bar
+         */
+        public Gradient(@ColorInt int endColor) {
+            mStartColor = Color.BLACK;
+            mEndColor = endColor;
+            updateShader();
+        }
+
+        @Override
+        public void setColor(@ColorInt int color) {
+            mStartColor = color;
+            updateShader();
+        }
+
+        private void updateShader() {
+            // A gradient of width 1, scaled to the bar while drawing
+            mShader = new LinearGradient(0f, 0f, 1f, 0f, mStartColor, mEndColor,
+                    Shader.TileMode.CLAMP);
+            mPaint.setShader(mShader);
+        }
+
+        @Override
+        public void draw(@NonNull Canvas canvas, @NonNull RectF from, @NonNull RectF to,
+                         float offset) {
+            interpolate(from, to, offset, mRect);
+            mMatrix.setScale(mRect.right - mRect.left, 1f);
+            mMatrix.postTranslate(mRect.left, 0f);
+            mShader.setLocalMatrix(mMatrix);
+            canvas.drawRect(mRect, mPaint);
+        }
+    }
+
+    /**
+     * A rounded bar which stretches toward the next page before its back end follows: the front
+     * end covers the first half of the scroll, the back end the second half.
+     */
+    class Stretchy extends Pill {
+        @Override
+        public void draw(@NonNull Canvas canvas, @NonNull RectF from, @NonNull RectF to,
+                         float offset) {
+            float frontOffset = Math.min(1f, offset * 2f);
+            float backOffset = Math.max(0f, offset * 2f - 1f);
+            mRect.set(
+                    from.left + (to.left - from.left) * backOffset,
+                    from.top,
+                    from.right + (to.right - from.right) * frontOffset,
+                    from.bottom
+            );
+            float radius = (mRect.bottom - mRect.top) / 2f;
+            canvas.drawRoundRect(mRect, radius, radius, mPaint);
+        }
+    }
+}
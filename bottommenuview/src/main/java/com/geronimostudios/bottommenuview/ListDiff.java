@@ -0,0 +1,81 @@
+package com.geronimostudios.bottommenuview;
+
+import java.util.List;
+
+/**
+ * Minimal edit script between two lists, the items being compared with equals(), which is an
+ * identity check for the tabs. Used by {@link BottomMenuView#submitTabs(List)} and when the
+ * adapter of the ViewPager changes, to only remove and insert the items which changed.
+ * This class is plain Java, like {@link MenuGeometry}.
+ */
+final class ListDiff {
+
+    private ListDiff() {
+    }
+
+    /**
+     * Find a longest common subsequence of two lists. Removing the items of from which are not
+     * kept, then inserting the items of to which are not kept at their index, gives to.
+     *
+     * @param from the old list
+     * @param to the new list
+     * @param keptFrom set to true for the items of from in the common subsequence
+     * @param keptTo set to true for the items of to in the common subsequence
+     */
+    static void computeCommon(List<?> from, List<?> to, boolean[] keptFrom, boolean[] keptTo) {
+        int fromSize = from.size();
+        int toSize = to.size();
+
+        // Most changes touch a few tabs, skip the common head and tail
+        int head = 0;
+        while (head < fromSize && head < toSize && same(from.get(head), to.get(head))) {
+            keptFrom[head] = true;
+            keptTo[head] = true;
+            ++head;
+        }
+        int tail = 0;
+        while (tail < fromSize - head && tail < toSize - head
+                && same(from.get(fromSize - 1 - tail), to.get(toSize - 1 - tail))) {
+            keptFrom[fromSize - 1 - tail] = true;
+            keptTo[toSize - 1 - tail] = true;
+            ++tail;
+        }
+
+        int rows = fromSize - head - tail;
+        int columns = toSize - head - tail;
+        if (rows == 0 || columns == 0) {
+            return;
+        }
+
+        // lengths[i][j]: length of the common subsequence of the middles from i and from j
+        int[][] lengths = new int[rows + 1][columns + 1];
+        for (int i = rows - 1; i >= 0; --i) {
+            for (int j = columns - 1; j >= 0; --j) {
+                if (same(from.get(head + i), to.get(head + j))) {
+                    lengths[i][j] = lengths[i + 1][j + 1] + 1;
+                } else {
+                    lengths[i][j] = Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+                }
+            }
+        }
+
+        int i = 0;
+        int j = 0;
+        while (i < rows && j < columns) {
+            if (same(from.get(head + i), to.get(head + j))) {
+                keptFrom[head + i] = true;
+                keptTo[head + j] = true;
+                ++i;
+                ++j;
+            } else if (lengths[i + 1][j] >= lengths[i][j + 1]) {
+                ++i;
+            } else {
+                ++j;
+            }
+        }
+    }
+
+    private static boolean same(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
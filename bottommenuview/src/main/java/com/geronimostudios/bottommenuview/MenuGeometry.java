@@ -0,0 +1,296 @@
+package com.geronimostudios.bottommenuview;
+
+import java.util.Arrays;
+
+/**
+ * Layout math of {@link BottomMenuView}: position of the tabs, of the underline and of the icons.
+ * This class is plain Java, without any Android dependency, so it can be tested and measured
+ * off-device. Once {@link #layout(float[], int, int, float)} has been called, no method
+ * allocates.
+ */
+final class MenuGeometry {
+
+    /**
+     * See {@link BottomMenuView#LINE_AUTO}.
+     */
+    static final int LINE_AUTO = -1;
+
+    /**
+     * See {@link BottomMenuView#LINE_FULL_WIDTH}.
+     */
+    static final int LINE_FULL_WIDTH = -2;
+
+    /**
+     * Used when a custom width is specified, see {@link BottomMenuView#setUnderlineWidth(int)}.
+     */
+    static final int LINE_CUSTOM = -3;
+
+    private int mItemCount;
+
+    /**
+     * Horizontal edges of the tabs: the tab i goes from mEdges[i] to mEdges[i + 1].
+     * Built from the prefix sums of the tab weights.
+     */
+    private int[] mEdges = new int[1];
+
+    /**
+     * Horizontal center of each tab, where the underline is when the tab is selected.
+     */
+    private float[] mCenters = new float[0];
+
+    /**
+     * Maximum horizontal scroll, 0 when every tab fits in the view.
+     */
+    private int mMaxScroll;
+
+    /**
+     * Compute the edges of the tabs.
+     *
+     * @param weights the weight of each tab, positive or 0 for an empty tab
+     * @param itemCount the number of tabs, the first values of weights are used
+     * @param width the width of the view in pixel
+     * @param minTabWidth the minimum width of a tab in pixel, 0 to fit the tabs in the view
+     */
+    void layout(float[] weights, int itemCount, int width, float minTabWidth) {
+        if (mCenters.length != itemCount) {
+            mEdges = new int[itemCount + 1];
+            mCenters = new float[itemCount];
+        }
+        mItemCount = itemCount;
+        if (itemCount == 0) {
+            mMaxScroll = 0;
+            return;
+        }
+
+        // Width of a tab of weight 1, large enough to respect the minimum width of every tab
+        float totalWeight = 0f;
+        float minWeight = Float.MAX_VALUE;
+        for (int i = 0; i < itemCount; ++i) {
+            totalWeight += weights[i];
+            minWeight = Math.min(minWeight, weights[i]);
+        }
+        float unitWidth = totalWeight > 0 ? width / totalWeight : 0f;
+        if (minTabWidth > 0 && minWeight > 0) {
+            unitWidth = Math.max(unitWidth, minTabWidth / minWeight);
+        }
+
+        float prefixWeight = 0f;
+        mEdges[0] = 0;
+        for (int i = 0; i < itemCount; ++i) {
+            prefixWeight += weights[i];
+            mEdges[i + 1] = Math.round(prefixWeight * unitWidth);
+            mCenters[i] = mEdges[i] + (mEdges[i + 1] - mEdges[i]) / 2f;
+        }
+        mMaxScroll = Math.max(0, mEdges[itemCount] - width);
+    }
+
+    int getItemCount() {
+        return mItemCount;
+    }
+
+    int getTabLeft(int index) {
+        return mEdges[index];
+    }
+
+    int getTabRight(int index) {
+        return mEdges[index + 1];
+    }
+
+    int getTabWidth(int index) {
+        return mEdges[index + 1] - mEdges[index];
+    }
+
+    int getMaxScroll() {
+        return mMaxScroll;
+    }
+
+    /**
+     * Get the left position of an icon centered in its tab.
+     *
+     * @param index the index of the tab
+     * @param iconSize the size of the icon in pixel
+     * @return the left of the icon in pixel
+     */
+    float getIconLeft(int index, float iconSize) {
+        return mEdges[index] + (getTabWidth(index) / 2) - iconSize / 2;
+    }
+
+    /**
+     * Binary search of the tab containing a position.
+     *
+     * @param x a position in pixel
+     * @return the index of the tab, the nearest one if x is outside of the tabs, or -1 if
+     *     there is no tab
+     */
+    int getTabIndexAt(int x) {
+        if (mItemCount == 0) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(mEdges, 0, mItemCount + 1, x);
+        if (index < 0) {
+            // x is between two edges, take the tab starting before x
+            index = -index - 2;
+        } else {
+            // x is on an edge, skip the empty tabs of weight 0 starting there
+            while (index < mItemCount && mEdges[index + 1] == x) {
+                ++index;
+            }
+        }
+        return Math.max(0, Math.min(index, mItemCount - 1));
+    }
+
+    /**
+     * Get the first tab visible in the view, partly or entirely.
+     *
+     * @param scrollX the horizontal scroll of the view
+     * @return the index of the first tab visible in the view
+     */
+    int getFirstVisibleTab(int scrollX) {
+        return mMaxScroll > 0 ? getTabIndexAt(scrollX) : 0;
+    }
+
+    /**
+     * Get the last tab visible in the view, partly or entirely.
+     *
+     * @param scrollX the horizontal scroll of the view
+     * @param width the width of the view
+     * @return the index of the last tab visible in the view
+     */
+    int getLastVisibleTab(int scrollX, int width) {
+        return mMaxScroll > 0 ? getTabIndexAt(scrollX + width - 1) : mItemCount - 1;
+    }
+
+    /**
+     * Get the horizontal center of the underline.
+     *
+     * @param page the page scrolled from
+     * @param offset the percentage scrolled from page to the next page
+     * @return the center x of the underline in pixel
+     */
+    float getUnderlineCenterX(int page, float offset) {
+        int lastIndex = mItemCount - 1;
+        page = Math.max(0, Math.min(page, lastIndex));
+        float center = mCenters[page];
+        if (page == lastIndex) {
+            return center;
+        }
+        return center + (mCenters[page + 1] - center) * offset;
+    }
+
+    /**
+     * Get the scroll position at which the underline is centered on a position, the inverse of
+     * {@link #getUnderlineCenterX(int, float)}.
+     *
+     * @param centerX a position in pixel
+     * @return the page and the percentage scrolled to the next page, clamped to the first and
+     *     the last tabs, or 0 if there is no tab
+     */
+    float getScrollPosition(float centerX) {
+        if (mItemCount == 0) {
+            return 0f;
+        }
+        int index = Arrays.binarySearch(mCenters, 0, mItemCount, centerX);
+        if (index >= 0) {
+            return index;
+        }
+        // centerX is between two centers, interpolate from the one before
+        index = -index - 2;
+        if (index < 0) {
+            return 0f;
+        }
+        if (index >= mItemCount - 1) {
+            return mItemCount - 1;
+        }
+        float center = mCenters[index];
+        return index + (centerX - center) / (mCenters[index + 1] - center);
+    }
+
+    /**
+     * Get the width of the underline.
+     * With {@link #LINE_FULL_WIDTH}, the width goes from the width of a tab to the next one.
+     *
+     * @param mode the underline mode
+     * @param width the width of the underline measured by
+     *              {@link #measureUnderlineWidth(int, float, float)}
+     * @param page the page scrolled from
+     * @param offset the percentage scrolled from page to the next page
+     * @return the width of the underline in pixel
+     */
+    float getUnderlineWidth(int mode, float width, int page, float offset) {
+        if (mode != LINE_FULL_WIDTH) {
+            return width;
+        }
+        int lastIndex = mItemCount - 1;
+        if (lastIndex < 0) {
+            return 0f;
+        }
+        page = Math.max(0, Math.min(page, lastIndex));
+        float tabWidth = getTabWidth(page);
+        if (page == lastIndex) {
+            return tabWidth;
+        }
+        return tabWidth + (getTabWidth(page + 1) - tabWidth) * offset;
+    }
+
+    /**
+     * Get the horizontal scroll keeping the underline in the middle of the view.
+     *
+     * @param page the page scrolled from
+     * @param offset the percentage scrolled from page to the next page
+     * @param width the width of the view
+     * @return the scroll in pixel, 0 when every tab fits in the view
+     */
+    int getStripScroll(int page, float offset, int width) {
+        if (mMaxScroll <= 0) {
+            return 0;
+        }
+        int scrollX = (int) (getUnderlineCenterX(page, offset) - width / 2f);
+        return Math.max(0, Math.min(scrollX, mMaxScroll));
+    }
+
+    /**
+     * Measure the width of the underline for a mode.
+     *
+     * @param mode the underline mode
+     * @param iconSize the size of the icons in pixel
+     * @param width the current width of the underline
+     * @return the new width of the underline
+     */
+    static float measureUnderlineWidth(int mode, float iconSize, float width) {
+        switch (mode) {
+            case LINE_AUTO:
+                return iconSize * 2;
+            case LINE_FULL_WIDTH:
+                // same width than a tab, see getUnderlineWidth()
+                return width;
+            case LINE_CUSTOM:
+                // nothing to do here
+                return width;
+            default:
+                throw new IllegalArgumentException("Invalid mode");
+        }
+    }
+
+    /**
+     * Get the offset y in pixel of the icon at a specific page.
+     * The default behavior is to move vertically up to 'paddingTop / 4' pixels from the rest
+     * position.
+     *
+     * @param iconPage the page of the icon
+     * @param scrollPage the page scrolled from
+     * @param scrollOffset the percentage scrolled from scrollPage to the next page
+     * @param currentPage the selected page
+     * @param lastPage the page selected before currentPage
+     * @param paddingTop the top padding of the view, which is the rest position
+     * @return an y offset at which the icon should be draw
+     */
+    static int getIconOffsetY(int iconPage, int scrollPage, float scrollOffset,
+                              int currentPage, int lastPage, int paddingTop) {
+        if ((iconPage != scrollPage && iconPage != scrollPage + 1)
+                || (iconPage != currentPage && iconPage != lastPage)) {
+            return paddingTop;
+        }
+        float percent = (iconPage == scrollPage) ? 1f - scrollOffset : scrollOffset;
+        return (int) (paddingTop - (paddingTop / 4f) * percent);
+    }
+}
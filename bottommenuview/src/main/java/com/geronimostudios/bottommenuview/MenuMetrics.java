@@ -0,0 +1,187 @@
+package com.geronimostudios.bottommenuview;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.support.annotation.Nullable;
+
+/**
+ * Collect the performance metrics of a {@link BottomMenuView}, see
+ * {@link BottomMenuView#setMetricsListener(BottomMenuView.MetricsListener)}.
+ * When no listener is set and tracing is disabled, every method returns after a single check
+ * and nothing is allocated, so the calls can stay in release builds.
+ */
+final class MenuMetrics {
+
+    static final int SECTION_DRAW = 0;
+    static final int SECTION_MEASURE = 1;
+    static final int SECTION_SETUP = 2;
+    static final int SECTION_DRAWABLE_STATE = 3;
+
+    /**
+     * Names of the sections in the systrace or Perfetto traces, indexed by section.
+     */
+    private static final String[] SECTION_NAMES = {
+            "BottomMenuView#onDraw",
+            "BottomMenuView#onMeasure",
+            "BottomMenuView#setupWith",
+            "BottomMenuView#drawableStateChanged",
+    };
+
+    /**
+     * Duration of the window over which the invalidations are counted.
+     */
+    private static final long INVALIDATION_WINDOW = 1000;
+
+    private @Nullable BottomMenuView.MetricsListener mListener;
+    private boolean mTraceEnabled;
+    private boolean mEnabled;
+
+    private int mInvalidationCount;
+    private long mInvalidationWindowStart;
+
+    private long mFrameIntervalNanos;
+    private long mLastFrameTime;
+    private int mFrameCount;
+    private int mDroppedFrameCount;
+
+    void setListener(@Nullable BottomMenuView.MetricsListener listener) {
+        mListener = listener;
+        mInvalidationCount = 0;
+        mInvalidationWindowStart = SystemClock.uptimeMillis();
+        mFrameIntervalNanos = 0;
+        updateEnabled();
+    }
+
+    void setTraceEnabled(boolean enabled) {
+        mTraceEnabled = enabled;
+        updateEnabled();
+    }
+
+    private void updateEnabled() {
+        mEnabled = mListener != null || mTraceEnabled;
+    }
+
+    /**
+     * Check if the metrics are reported to a listener, not only traced.
+     *
+     * @return true if a listener is set, false if the metrics are only traced or disabled
+     */
+    boolean isListening() {
+        return mListener != null;
+    }
+
+    /**
+     * Start measuring a section, must be followed by {@link #endSection(int, long)}.
+     *
+     * @param section one of the SECTION_* constants
+     * @return the start time to give to {@link #endSection(int, long)}
+     */
+    long beginSection(int section) {
+        if (!mEnabled) {
+            return 0;
+        }
+        if (mTraceEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(SECTION_NAMES[section]);
+        }
+        return mListener != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Stop measuring a section and report its duration.
+     *
+     * @param section the section given to {@link #beginSection(int)}
+     * @param startTime the value returned by {@link #beginSection(int)}
+     */
+    void endSection(int section, long startTime) {
+        if (!mEnabled) {
+            return;
+        }
+        if (mTraceEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+        if (mListener == null) {
+            return;
+        }
+        long duration = System.nanoTime() - startTime;
+        switch (section) {
+            case SECTION_DRAW:
+                mListener.onDraw(duration);
+                break;
+            case SECTION_MEASURE:
+                mListener.onMeasure(duration);
+                break;
+            case SECTION_SETUP:
+                mListener.onSetup(duration);
+                break;
+            case SECTION_DRAWABLE_STATE:
+                mListener.onDrawableStateChanged(duration);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid section");
+        }
+    }
+
+    /**
+     * Count an invalidation of the view. The rate is reported by the first invalidation
+     * following a window of one second.
+     */
+    void onInvalidate() {
+        if (mListener == null) {
+            return;
+        }
+        ++mInvalidationCount;
+        long now = SystemClock.uptimeMillis();
+        long elapsed = now - mInvalidationWindowStart;
+        if (elapsed >= INVALIDATION_WINDOW) {
+            mListener.onInvalidationRate((int) (mInvalidationCount * 1000L / elapsed));
+            mInvalidationCount = 0;
+            mInvalidationWindowStart = now;
+        }
+    }
+
+    /**
+     * Start counting the frames of a page animation.
+     *
+     * @param frameIntervalNanos the refresh period of the display
+     */
+    void onAnimationStart(long frameIntervalNanos) {
+        if (mListener == null) {
+            return;
+        }
+        mFrameIntervalNanos = frameIntervalNanos;
+        mLastFrameTime = 0;
+        mFrameCount = 0;
+        mDroppedFrameCount = 0;
+    }
+
+    /**
+     * Count a frame of the page animation. A gap of more than one refresh period since the
+     * previous frame is counted as dropped frames.
+     */
+    void onAnimationFrame() {
+        if (mListener == null || mFrameIntervalNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (mLastFrameTime != 0) {
+            long missed = Math.round((now - mLastFrameTime) / (double) mFrameIntervalNanos) - 1;
+            if (missed > 0) {
+                mDroppedFrameCount += missed;
+            }
+        }
+        mLastFrameTime = now;
+        ++mFrameCount;
+    }
+
+    /**
+     * Report the frames of the page animation, once it ended or has been canceled.
+     */
+    void onAnimationEnd() {
+        if (mListener == null || mFrameIntervalNanos <= 0) {
+            return;
+        }
+        mFrameIntervalNanos = 0;
+        mListener.onPageAnimationFrames(mFrameCount, mDroppedFrameCount);
+    }
+}
@@ -0,0 +1,150 @@
+package com.geronimostudios.bottommenuview;
+
+/**
+ * Damped spring moving the scroll position of {@link BottomMenuView} toward the selected page,
+ * see {@link BottomMenuView#setPageAnimationSpring(float, float)}.
+ * Each step uses the exact solution of the spring equation over the elapsed time, so the motion
+ * does not depend on the refresh rate of the display. This class is plain Java, like
+ * {@link MenuGeometry}, and does not allocate.
+ */
+final class MenuSpring {
+
+    /**
+     * Distance to the target, in pages, under which the spring can stop.
+     */
+    private static final double REST_DISTANCE = 0.001;
+
+    /**
+     * Velocity, in pages per second, under which the spring can stop.
+     */
+    private static final double REST_VELOCITY = 0.05;
+
+    private double mStiffness;
+    private double mDampingRatio;
+
+    private double mPosition;
+    private double mVelocity;
+    private double mTarget;
+
+    /**
+     * Create a spring at rest on 0.
+     *
+     * @param stiffness the stiffness of the spring, in 1/s^2
+     * @param dampingRatio the damping ratio, 1 to stop without bouncing, below 1 to bounce
+     */
+    MenuSpring(float stiffness, float dampingRatio) {
+        setParameters(stiffness, dampingRatio);
+    }
+
+    void setParameters(float stiffness, float dampingRatio) {
+        if (stiffness <= 0f || dampingRatio <= 0f) {
+            throw new IllegalArgumentException("The stiffness and damping ratio must be positive");
+        }
+        mStiffness = stiffness;
+        mDampingRatio = dampingRatio;
+    }
+
+    /**
+     * Start from a position, keeping the velocity.
+     */
+    void setPosition(float position) {
+        mPosition = position;
+    }
+
+    void setVelocity(float velocity) {
+        mVelocity = velocity;
+    }
+
+    void setTarget(float target) {
+        mTarget = target;
+    }
+
+    float getPosition() {
+        return (float) mPosition;
+    }
+
+    /**
+     * Get the current velocity of the spring.
+     *
+     * @return the velocity in pages per second
+     */
+    float getVelocity() {
+        return (float) mVelocity;
+    }
+
+    float getTarget() {
+        return (float) mTarget;
+    }
+
+    /**
+     * Stop on the target.
+     */
+    void snapToTarget() {
+        mPosition = mTarget;
+        mVelocity = 0;
+    }
+
+    /**
+     * Check if the spring can stop.
+     *
+     * @return true if the spring is close enough to the target and slow enough to stop
+     */
+    boolean isAtRest() {
+        return Math.abs(mPosition - mTarget) < REST_DISTANCE
+                && Math.abs(mVelocity) < REST_VELOCITY;
+    }
+
+    /**
+     * Move the spring by a time step. Large steps are as exact as small ones.
+     *
+     * @param seconds the time elapsed since the previous step
+     * @return true if the spring is at rest on the target
+     */
+    boolean step(double seconds) {
+        if (seconds <= 0) {
+            return isAtRest();
+        }
+        double x0 = mPosition - mTarget;
+        double v0 = mVelocity;
+        double omega = Math.sqrt(mStiffness);
+        double zeta = mDampingRatio;
+        double x;
+        double v;
+        if (zeta < 1) {
+            // Under damped: oscillates around the target
+            double dampedOmega = omega * Math.sqrt(1 - zeta * zeta);
+            double decay = Math.exp(-zeta * omega * seconds);
+            double a = x0;
+            double b = (v0 + zeta * omega * x0) / dampedOmega;
+            double cos = Math.cos(dampedOmega * seconds);
+            double sin = Math.sin(dampedOmega * seconds);
+            x = decay * (a * cos + b * sin);
+            v = decay * ((b * dampedOmega - zeta * omega * a) * cos
+                    - (a * dampedOmega + zeta * omega * b) * sin);
+        } else if (zeta == 1) {
+            // Critically damped: the fastest return without overshoot
+            double decay = Math.exp(-omega * seconds);
+            double b = v0 + omega * x0;
+            x = (x0 + b * seconds) * decay;
+            v = (b - omega * (x0 + b * seconds)) * decay;
+        } else {
+            // Over damped: sum of two decaying exponentials
+            double root = omega * Math.sqrt(zeta * zeta - 1);
+            double r1 = -zeta * omega + root;
+            double r2 = -zeta * omega - root;
+            double c1 = (v0 - r2 * x0) / (r1 - r2);
+            double c2 = x0 - c1;
+            double e1 = Math.exp(r1 * seconds);
+            double e2 = Math.exp(r2 * seconds);
+            x = c1 * e1 + c2 * e2;
+            v = c1 * r1 * e1 + c2 * r2 * e2;
+        }
+        mPosition = mTarget + x;
+        mVelocity = v;
+        if (isAtRest()) {
+            snapToTarget();
+            return true;
+        }
+        return false;
+    }
+}
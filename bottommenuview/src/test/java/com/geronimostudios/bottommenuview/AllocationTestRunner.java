@@ -0,0 +1,24 @@
+package com.geronimostudios.bottommenuview;
+
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+
+/**
+ * Robolectric runner sharing the allocation instrumenter with the agent: the sandbox must not
+ * load its own copy of the recorder, the instrumented classes report to the agent's copy.
+ */
+public class AllocationTestRunner extends RobolectricTestRunner {
+
+    public AllocationTestRunner(Class<?> testClass) throws InitializationError {
+        super(testClass);
+    }
+
+    @Override
+    public InstrumentationConfiguration createClassLoaderConfig(FrameworkMethod method) {
+        return new InstrumentationConfiguration.Builder(super.createClassLoaderConfig(method))
+                .doNotAcquirePackage("com.google.monitoring")
+                .build();
+    }
+}
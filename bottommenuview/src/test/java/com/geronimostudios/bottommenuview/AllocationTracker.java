@@ -0,0 +1,112 @@
+package com.geronimostudios.bottommenuview;
+
+import com.google.monitoring.runtime.instrumentation.AllocationRecorder;
+import com.google.monitoring.runtime.instrumentation.Sampler;
+
+/**
+ * Count the allocations made by the classes of the library on the test thread.
+ * An allocation is blamed on the first frame of its stack outside of the JDK and of the
+ * instrumenter: the allocations of the framework, of Robolectric and of the tests are ignored.
+ * Requires the allocation instrumenter agent, see build.gradle and {@link AllocationTestRunner}.
+ */
+final class AllocationTracker implements Sampler {
+
+    private static final String LIBRARY_PACKAGE = "com.geronimostudios.bottommenuview.";
+
+    private static final String[] TRANSPARENT_PREFIXES = {
+            "java.", "javax.", "sun.", "jdk.", "com.google.monitoring.",
+            AllocationTracker.class.getName()
+    };
+
+    private static AllocationTracker sInstance;
+
+    private volatile Thread mRecordingThread;
+    private int mCount;
+    private String mFirstAllocation;
+
+    private AllocationTracker() {
+    }
+
+    /**
+     * Start counting the allocations of the library made on the current thread.
+     */
+    static AllocationTracker start() {
+        if (AllocationRecorder.getInstrumentation() == null) {
+            throw new IllegalStateException("The allocation instrumenter agent is not loaded");
+        }
+        if (sInstance == null) {
+            sInstance = new AllocationTracker();
+            AllocationRecorder.addSampler(sInstance);
+        }
+        sInstance.mCount = 0;
+        sInstance.mFirstAllocation = null;
+        sInstance.mRecordingThread = Thread.currentThread();
+        return sInstance;
+    }
+
+    /**
+     * Stop recording.
+     *
+     * @return the number of allocations made by the library since {@link #start()}
+     */
+    int stop() {
+        mRecordingThread = null;
+        return mCount;
+    }
+
+    /**
+     * Describe the first allocation counted by the last recording.
+     *
+     * @return the type and site of the first allocation counted, null if none
+     */
+    String getFirstAllocation() {
+        return mFirstAllocation;
+    }
+
+    @Override
+    public void sampleAllocation(int count, String desc, Object newObj, long size) {
+        Thread thread = Thread.currentThread();
+        if (thread != mRecordingThread) {
+            return;
+        }
+        for (StackTraceElement frame : thread.getStackTrace()) {
+            String className = frame.getClassName();
+            if (!isTransparent(className)) {
+                if (isLibraryClass(className)) {
+                    if (mCount == 0) {
+                        mFirstAllocation = desc + " at " + frame;
+                    }
+                    ++mCount;
+                }
+                return;
+            }
+        }
+    }
+
+    private static boolean isTransparent(String className) {
+        for (String prefix : TRANSPARENT_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if a class belongs to the library, whose allocations are counted.
+     *
+     * @return true for the classes of the library, false for the tests and their helpers
+     */
+    private static boolean isLibraryClass(String className) {
+        if (!className.startsWith(LIBRARY_PACKAGE)) {
+            return false;
+        }
+        String simpleName = className.substring(LIBRARY_PACKAGE.length());
+        int nested = simpleName.indexOf('$');
+        if (nested >= 0) {
+            simpleName = simpleName.substring(0, nested);
+        }
+        return !simpleName.startsWith("Test") && !simpleName.endsWith("Test")
+                && !simpleName.equals("AllocationTestRunner");
+    }
+}
@@ -0,0 +1,112 @@
+package com.geronimostudios.bottommenuview;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Notifications of {@link BottomMenuState}: once per batch, with the changes of the batch.
+ */
+public class BottomMenuStateTest {
+
+    private BottomMenuState mState;
+    private final List<Integer> mNotifications = new ArrayList<>();
+
+    /**
+     * Create a state of 5 pages, observed by the test.
+     */
+    @Before
+    public void setUp() {
+        mState = new BottomMenuState();
+        mState.setPageCount(5);
+        mState.addObserver(new BottomMenuState.Observer() {
+            @Override
+            public void onMenuStateChanged(BottomMenuState state, int changes) {
+                mNotifications.add(changes);
+            }
+        });
+    }
+
+    @Test
+    public void changeOutsideOfABatchIsNotifiedAtOnce() {
+        mState.selectPage(2);
+        assertNotifications(BottomMenuState.CHANGED_SELECTION);
+        assertEquals(2, mState.getCurrentPage());
+        assertEquals(0, mState.getLastPage());
+    }
+
+    @Test
+    public void batchIsNotifiedOnce() {
+        mState.beginBatch();
+        mState.selectPage(1);
+        mState.setScrollPosition(0.5f);
+        mState.setScrollPosition(1f);
+        assertNotifications();
+
+        mState.endBatch();
+        assertNotifications(BottomMenuState.CHANGED_SELECTION | BottomMenuState.CHANGED_SCROLL);
+        assertEquals(1, mState.getScrollPage());
+        assertEquals(0f, mState.getScrollOffset(), 0f);
+    }
+
+    @Test
+    public void nestedBatchesAreNotifiedByTheOuterBatch() {
+        mState.beginBatch();
+        mState.setPageCount(3);
+        mState.beginBatch();
+        mState.reset(2);
+        mState.endBatch();
+        assertNotifications();
+
+        mState.endBatch();
+        assertNotifications(BottomMenuState.CHANGED_PAGE_COUNT
+                | BottomMenuState.CHANGED_SELECTION | BottomMenuState.CHANGED_SCROLL);
+    }
+
+    @Test
+    public void nothingChangedIsNotNotified() {
+        mState.setPageCount(5);
+        mState.reset(0);
+        mState.setScrollPosition(0, 0f);
+
+        mState.beginBatch();
+        mState.endBatch();
+
+        mState.beginBatch();
+        mState.selectPage(3);
+        mState.setSelection(0, 0);
+        mState.endBatch();
+        // A value changed and set back is still reported, nothing else is
+        assertNotifications(BottomMenuState.CHANGED_SELECTION);
+    }
+
+    @Test
+    public void changesOfAnObserverAreNotifiedInAFollowingPass() {
+        mState.addObserver(new BottomMenuState.Observer() {
+            @Override
+            public void onMenuStateChanged(BottomMenuState state, int changes) {
+                // Follow the selection
+                state.setScrollPosition(state.getCurrentPage(), 0f);
+            }
+        });
+
+        mState.selectPage(4);
+        assertNotifications(BottomMenuState.CHANGED_SELECTION, BottomMenuState.CHANGED_SCROLL);
+        assertEquals(4f, mState.getScrollPosition(), 0f);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void endBatchWithoutBeginBatchFails() {
+        mState.endBatch();
+    }
+
+    private void assertNotifications(Integer... changes) {
+        assertEquals(Arrays.asList(changes), mNotifications);
+        mNotifications.clear();
+    }
+}
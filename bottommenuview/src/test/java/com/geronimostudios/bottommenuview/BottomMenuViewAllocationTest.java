@@ -0,0 +1,260 @@
+package com.geronimostudios.bottommenuview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * The hot paths of {@link BottomMenuView} must not allocate once warmed up, and must only
+ * redraw what moves: the scroll callbacks of the ViewPager, the taps, the page animations and
+ * the draws.
+ */
+@RunWith(AllocationTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class BottomMenuViewAllocationTest {
+
+    static final int TAB_COUNT = 5;
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 168;
+    static final long FRAME_MILLIS = 16;
+
+    private static final int WARM_UP = 50;
+    private static final int REPEAT = 1000;
+
+    /**
+     * Frames advanced after a tap or a page change, the animation lasts 150ms.
+     */
+    private static final int ANIMATION_FRAMES = 12;
+
+    private Activity mActivity;
+    private TestMenuView mMenuView;
+    private Canvas mCanvas;
+    private final List<MotionEvent> mEvents = new ArrayList<>();
+
+    /**
+     * Create a detached menu and a canvas of its size.
+     */
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mMenuView = new TestMenuView(mActivity);
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    /**
+     * Recycle the touch events obtained by the test.
+     */
+    @After
+    public void tearDown() {
+        for (MotionEvent event : mEvents) {
+            event.recycle();
+        }
+    }
+
+    @Test
+    public void scrollCallbacksDoNotAllocate() {
+        TestViewPager viewPager = new TestViewPager(mActivity);
+        viewPager.setAdapter(new TestViewPager.IconAdapter(TAB_COUNT));
+        mMenuView.setupWith(viewPager);
+        attach();
+
+        for (int i = 0; i < WARM_UP; ++i) {
+            scroll(viewPager, i);
+        }
+        mMenuView.resetInvalidateCounts();
+        AllocationTracker tracker = AllocationTracker.start();
+        for (int i = 0; i < REPEAT; ++i) {
+            scroll(viewPager, i);
+        }
+        assertNoAllocation(tracker);
+
+        // A dirty rectangle per callback at most, never the whole view
+        assertEquals(0, mMenuView.mFullInvalidateCount);
+        assertTrue("Invalidated " + mMenuView.mInvalidateCount + " times",
+                mMenuView.mInvalidateCount <= REPEAT);
+    }
+
+    @Test
+    public void drawDoesNotAllocate() {
+        List<BottomMenuView.Tab> tabs = createTabs();
+        mMenuView.setupWith(tabs);
+        attach();
+        mMenuView.setBadge(0, 3);
+        mMenuView.setBadge(1, BottomMenuView.BADGE_DOT);
+
+        for (int i = 0; i < WARM_UP; ++i) {
+            draw(i);
+        }
+        mMenuView.resetInvalidateCounts();
+        AllocationTracker tracker = AllocationTracker.start();
+        for (int i = 0; i < REPEAT; ++i) {
+            draw(i);
+        }
+        assertNoAllocation(tracker);
+
+        // Each page change redraws a dirty rectangle, the draws do not invalidate
+        assertEquals(0, mMenuView.mFullInvalidateCount);
+        assertTrue("Invalidated " + mMenuView.mInvalidateCount + " times",
+                mMenuView.mInvalidateCount <= REPEAT);
+    }
+
+    @Test
+    public void tapsDoNotAllocate() {
+        mMenuView.setupWith(createTabs());
+        attach();
+        MotionEvent[] downs = new MotionEvent[TAB_COUNT];
+        MotionEvent[] ups = new MotionEvent[TAB_COUNT];
+        for (int i = 0; i < TAB_COUNT; ++i) {
+            float x = (i + 0.5f) * WIDTH / TAB_COUNT;
+            downs[i] = obtainEvent(MotionEvent.ACTION_DOWN, x);
+            ups[i] = obtainEvent(MotionEvent.ACTION_UP, x);
+        }
+
+        for (int i = 0; i < WARM_UP; ++i) {
+            tap(downs, ups, i);
+        }
+        mMenuView.resetInvalidateCounts();
+        AllocationTracker tracker = AllocationTracker.start();
+        for (int i = 0; i < REPEAT; ++i) {
+            tap(downs, ups, i);
+        }
+        assertNoAllocation(tracker);
+
+        assertEquals(0, mMenuView.mFullInvalidateCount);
+        // The pressed tabs, the selection and a dirty rectangle per frame
+        int maxInvalidates = REPEAT * (ANIMATION_FRAMES + 6);
+        assertTrue("Invalidated " + mMenuView.mInvalidateCount + " times",
+                mMenuView.mInvalidateCount <= maxInvalidates);
+    }
+
+    @Test
+    public void pageAnimationsDoNotAllocate() {
+        mMenuView.setupWith(createTabs());
+        attach();
+
+        for (int i = 0; i < WARM_UP; ++i) {
+            changePage(i);
+        }
+        mMenuView.resetInvalidateCounts();
+        AllocationTracker tracker = AllocationTracker.start();
+        for (int i = 0; i < REPEAT; ++i) {
+            changePage(i);
+        }
+        assertNoAllocation(tracker);
+
+        assertEquals(0, mMenuView.mFullInvalidateCount);
+        // The selection and a dirty rectangle per frame
+        int maxInvalidates = REPEAT * (ANIMATION_FRAMES + 2);
+        assertTrue("Invalidated " + mMenuView.mInvalidateCount + " times",
+                mMenuView.mInvalidateCount <= maxInvalidates);
+    }
+
+    @Test
+    public void interruptedPageAnimationsDoNotAllocate() {
+        mMenuView.setupWith(createTabs());
+        attach();
+
+        for (int i = 0; i < WARM_UP; ++i) {
+            interruptPageChange(i);
+        }
+        AllocationTracker tracker = AllocationTracker.start();
+        for (int i = 0; i < REPEAT; ++i) {
+            interruptPageChange(i);
+        }
+        assertNoAllocation(tracker);
+    }
+
+    private List<BottomMenuView.Tab> createTabs() {
+        List<BottomMenuView.Tab> tabs = new ArrayList<>();
+        for (int i = 0; i < TAB_COUNT; ++i) {
+            tabs.add(new BottomMenuView.Tab(mActivity, android.R.drawable.ic_menu_add)
+                    .setLabel("Tab " + i));
+        }
+        return tabs;
+    }
+
+    /**
+     * Attach the menu to a window, so it observes its state, and lay it out.
+     */
+    private void attach() {
+        mActivity.setContentView(mMenuView, new ViewGroup.LayoutParams(WIDTH, HEIGHT));
+        ShadowLooper.idleMainLooper();
+        mMenuView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY)
+        );
+        mMenuView.layout(0, 0, WIDTH, HEIGHT);
+        mMenuView.drawFrame(mCanvas);
+    }
+
+    private MotionEvent obtainEvent(int action, float x) {
+        MotionEvent event = MotionEvent.obtain(0, 0, action, x, HEIGHT / 2, 0);
+        mEvents.add(event);
+        return event;
+    }
+
+    private void scroll(TestViewPager viewPager, int step) {
+        int page = (step / 10) % (TAB_COUNT - 1);
+        viewPager.dispatchPageScrolled(page, (step % 10) / 10f);
+        // The callbacks of a frame are notified on the next animation frame
+        ShadowLooper.idleMainLooper(FRAME_MILLIS, TimeUnit.MILLISECONDS);
+        mMenuView.drawFrame(mCanvas);
+    }
+
+    private void draw(int step) {
+        if (step % 10 == 0) {
+            mMenuView.setCurrentPage((step / 10) % TAB_COUNT, false);
+        }
+        mMenuView.drawFrame(mCanvas);
+    }
+
+    private void tap(MotionEvent[] downs, MotionEvent[] ups, int step) {
+        int tab = (step * 2) % TAB_COUNT;
+        mMenuView.dispatchTouchEvent(downs[tab]);
+        mMenuView.dispatchTouchEvent(ups[tab]);
+        advanceFrames(ANIMATION_FRAMES);
+    }
+
+    private void changePage(int step) {
+        mMenuView.setCurrentPage((step * 3) % TAB_COUNT);
+        advanceFrames(ANIMATION_FRAMES);
+    }
+
+    /**
+     * Change the page again while the previous animation runs.
+     */
+    private void interruptPageChange(int step) {
+        mMenuView.setCurrentPage(step % TAB_COUNT);
+        advanceFrames(3);
+    }
+
+    private void advanceFrames(int frames) {
+        for (int i = 0; i < frames; ++i) {
+            ShadowLooper.idleMainLooper(FRAME_MILLIS, TimeUnit.MILLISECONDS);
+            mMenuView.drawFrame(mCanvas);
+        }
+    }
+
+    static void assertNoAllocation(AllocationTracker tracker) {
+        int count = tracker.stop();
+        assertEquals("First allocation: " + tracker.getFirstAllocation(), 0, count);
+    }
+}
@@ -0,0 +1,262 @@
+package com.geronimostudios.bottommenuview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * Behavior of {@link BottomMenuView} driven through its public API, frame by frame.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class BottomMenuViewTest {
+
+    private static final int WIDTH = BottomMenuViewAllocationTest.WIDTH;
+    private static final int HEIGHT = BottomMenuViewAllocationTest.HEIGHT;
+
+    /**
+     * Frames advanced to finish a page animation, the animation lasts 150ms.
+     */
+    private static final int ANIMATION_FRAMES = 12;
+
+    private Activity mActivity;
+    private TestMenuView mMenuView;
+    private Canvas mCanvas;
+
+    /**
+     * Create a detached menu and a canvas of its size.
+     */
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mMenuView = new TestMenuView(mActivity);
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void removingTheCurrentTabAnimatesTheUnderline() {
+        mMenuView.setupWith(createTabs(3));
+        attach();
+        mMenuView.setCurrentPage(1, false);
+        mMenuView.drawFrame(mCanvas);
+        mMenuView.setTabChangesAnimated(true);
+
+        mMenuView.removeTab(1);
+
+        // The underline was in the middle of the view, between the two remaining tabs
+        BottomMenuState state = mMenuView.getState();
+        assertEquals(1, state.getCurrentPage());
+        assertEquals(0.5f, state.getScrollPosition(), 0.01f);
+
+        advanceFrames(3);
+        float position = state.getScrollPosition();
+        assertTrue("Scroll position " + position, position > 0.5f && position < 1f);
+
+        advanceFrames(ANIMATION_FRAMES);
+        assertEquals(1f, state.getScrollPosition(), 0f);
+    }
+
+    @Test
+    public void releasingOutsideOfTheMenuCancelsThePress() {
+        mMenuView.setupWith(createTabs(3));
+        attach();
+        final List<String> calls = new ArrayList<>();
+        mMenuView.setOnPageAboutToChangeListener(
+                new BottomMenuView.OnPageAboutToChangeListener() {
+                    @Override
+                    public void onMenuPageAboutToChange(int page) {
+                        calls.add("about to change " + page);
+                    }
+
+                    @Override
+                    public void onMenuPageChangeCanceled(int page) {
+                        calls.add("canceled " + page);
+                    }
+                });
+
+        // Press the last tab, leave the menu and release above the last tab
+        float x = WIDTH * 5f / 6f;
+        touch(MotionEvent.ACTION_DOWN, x, HEIGHT / 2);
+        touch(MotionEvent.ACTION_MOVE, x, -HEIGHT);
+        touch(MotionEvent.ACTION_UP, x, -HEIGHT);
+        advanceFrames(ANIMATION_FRAMES);
+
+        assertEquals(0, mMenuView.getState().getCurrentPage());
+        assertEquals(0f, mMenuView.getState().getScrollPosition(), 0f);
+        assertEquals(Arrays.asList("about to change 2", "canceled 2"), calls);
+    }
+
+    @Test
+    public void releasingOnAnotherTabThanTheAnnouncedOneCancelsThePress() {
+        mMenuView.setupWith(createTabs(3));
+        attach();
+
+        // No move event between the press of the last tab and the release on the second one
+        touch(MotionEvent.ACTION_DOWN, WIDTH * 5f / 6f, HEIGHT / 2);
+        touch(MotionEvent.ACTION_UP, WIDTH / 2f, HEIGHT / 2);
+        advanceFrames(ANIMATION_FRAMES);
+
+        assertEquals(0, mMenuView.getState().getCurrentPage());
+    }
+
+    @Test
+    public void tapChangesThePage() {
+        mMenuView.setupWith(createTabs(3));
+        attach();
+
+        touch(MotionEvent.ACTION_DOWN, WIDTH / 2f, HEIGHT / 2);
+        touch(MotionEvent.ACTION_UP, WIDTH / 2f, HEIGHT / 2);
+        advanceFrames(ANIMATION_FRAMES);
+
+        assertEquals(1, mMenuView.getState().getCurrentPage());
+        assertEquals(1f, mMenuView.getState().getScrollPosition(), 0f);
+    }
+
+    @Test
+    public void viewPagerCallbacksOfAFrameAreNotifiedOnce() {
+        TestViewPager viewPager = new TestViewPager(mActivity);
+        viewPager.setAdapter(new TestViewPager.IconAdapter(3));
+        mMenuView.setupWith(viewPager);
+        attach();
+        final int[] notifications = new int[1];
+        mMenuView.getState().addObserver(new BottomMenuState.Observer() {
+            @Override
+            public void onMenuStateChanged(BottomMenuState state, int changes) {
+                ++notifications[0];
+            }
+        });
+
+        viewPager.dispatchPageScrolled(0, 0.6f);
+        viewPager.dispatchPageSelected(1);
+        viewPager.dispatchPageScrolled(0, 0.7f);
+        assertEquals(0, notifications[0]);
+
+        advanceFrames(1);
+        assertEquals(1, notifications[0]);
+        assertEquals(1, mMenuView.getState().getCurrentPage());
+        assertEquals(0.7f, mMenuView.getState().getScrollPosition(), 0.001f);
+    }
+
+    @Test
+    public void setCurrentPageWithoutAnimationNotifiesOnce() {
+        mMenuView.setupWith(createTabs(3));
+        attach();
+        final int[] notifications = new int[1];
+        mMenuView.getState().addObserver(new BottomMenuState.Observer() {
+            @Override
+            public void onMenuStateChanged(BottomMenuState state, int changes) {
+                ++notifications[0];
+            }
+        });
+
+        mMenuView.setCurrentPage(2, false);
+
+        assertEquals(1, notifications[0]);
+        assertEquals(2f, mMenuView.getState().getScrollPosition(), 0f);
+    }
+
+    @Test
+    public void onlyTheVisibleBackgroundsAreRegistered() {
+        List<BottomMenuView.Tab> tabs = new ArrayList<>();
+        for (int i = 0; i < 6; ++i) {
+            tabs.add(new BottomMenuView.Tab(
+                    mActivity, android.R.drawable.ic_menu_add, new ColorDrawable(Color.GRAY)));
+        }
+        mMenuView.setMinTabWidth(WIDTH / 3);
+        mMenuView.setupWith(tabs);
+        attach();
+
+        for (int i = 0; i < tabs.size(); ++i) {
+            Drawable background = tabs.get(i).getBackgroundDrawable();
+            if (i < 3) {
+                assertSame("Tab " + i, mMenuView, background.getCallback());
+            } else {
+                assertNull("Tab " + i, background.getCallback());
+            }
+        }
+    }
+
+    @Test
+    public void unchangedAdapterDoesNotResetTheSwipe() {
+        TestViewPager viewPager = new TestViewPager(mActivity);
+        TestViewPager.IconAdapter adapter = new TestViewPager.IconAdapter(3);
+        viewPager.setAdapter(adapter);
+        mMenuView.setupWith(viewPager);
+        attach();
+        viewPager.dispatchPageScrolled(0, 0.4f);
+        advanceFrames(1);
+        final int[] notifications = new int[1];
+        mMenuView.getState().addObserver(new BottomMenuState.Observer() {
+            @Override
+            public void onMenuStateChanged(BottomMenuState state, int changes) {
+                ++notifications[0];
+            }
+        });
+
+        adapter.notifyDataSetChanged();
+        advanceFrames(1);
+
+        assertEquals(0, notifications[0]);
+        assertEquals(0.4f, mMenuView.getState().getScrollPosition(), 0.001f);
+    }
+
+    private void touch(int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(0, 0, action, x, y, 0);
+        mMenuView.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private List<BottomMenuView.Tab> createTabs(int count) {
+        List<BottomMenuView.Tab> tabs = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            tabs.add(new BottomMenuView.Tab(mActivity, android.R.drawable.ic_menu_add));
+        }
+        return tabs;
+    }
+
+    /**
+     * Attach the menu to a window, so it observes its state, and lay it out.
+     */
+    private void attach() {
+        mActivity.setContentView(mMenuView, new ViewGroup.LayoutParams(WIDTH, HEIGHT));
+        ShadowLooper.idleMainLooper();
+        mMenuView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY)
+        );
+        mMenuView.layout(0, 0, WIDTH, HEIGHT);
+        mMenuView.drawFrame(mCanvas);
+    }
+
+    private void advanceFrames(int frames) {
+        for (int i = 0; i < frames; ++i) {
+            ShadowLooper.idleMainLooper(BottomMenuViewAllocationTest.FRAME_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            mMenuView.drawFrame(mCanvas);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.geronimostudios.bottommenuview;
+
+import static com.geronimostudios.bottommenuview.BottomMenuViewAllocationTest.FRAME_MILLIS;
+import static com.geronimostudios.bottommenuview.BottomMenuViewAllocationTest.HEIGHT;
+import static com.geronimostudios.bottommenuview.BottomMenuViewAllocationTest.TAB_COUNT;
+import static com.geronimostudios.bottommenuview.BottomMenuViewAllocationTest.WIDTH;
+import static com.geronimostudios.bottommenuview.BottomMenuViewAllocationTest.assertNoAllocation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.RippleDrawable;
+import android.graphics.drawable.StateListDrawable;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * Pressing and releasing the tabs switches their backgrounds between cached state sets, see
+ * {@link BottomMenuView#drawableStateChanged()}: no array is allocated once they are known, and
+ * only the tabs whose state changed are redrawn. The ripples of API 21 are covered as well:
+ * Robolectric draws them on a software canvas, with the animators of the main looper.
+ */
+@RunWith(AllocationTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DrawableStateAllocationTest {
+
+    private static final int WARM_UP = 20;
+    private static final int REPEAT = 1000;
+
+    private static final int TAB_WIDTH = WIDTH / TAB_COUNT;
+
+    /**
+     * Frames advanced after a press, for the ripple to animate its exit.
+     */
+    private static final int RIPPLE_FRAMES = 4;
+
+    private TestMenuView mMenuView;
+    private Canvas mCanvas;
+    private final MotionEvent[] mDowns = new MotionEvent[TAB_COUNT];
+    private final MotionEvent[] mCancels = new MotionEvent[TAB_COUNT];
+    private final MotionEvent[] mUps = new MotionEvent[TAB_COUNT];
+
+    /**
+     * Attach a menu whose tabs have state list backgrounds, and obtain the touch events.
+     */
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mMenuView = new TestMenuView(activity);
+        List<BottomMenuView.Tab> tabs = new ArrayList<>();
+        for (int i = 0; i < TAB_COUNT; ++i) {
+            tabs.add(new BottomMenuView.Tab(
+                    activity, android.R.drawable.ic_menu_add, createBackground()));
+        }
+        mMenuView.setupWith(tabs);
+
+        activity.setContentView(mMenuView, new ViewGroup.LayoutParams(WIDTH, HEIGHT));
+        ShadowLooper.idleMainLooper();
+        mMenuView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY)
+        );
+        mMenuView.layout(0, 0, WIDTH, HEIGHT);
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+        mMenuView.drawFrame(mCanvas);
+
+        for (int i = 0; i < TAB_COUNT; ++i) {
+            float x = (i + 0.5f) * TAB_WIDTH;
+            mDowns[i] = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, HEIGHT / 2, 0);
+            mCancels[i] = MotionEvent.obtain(0, 0, MotionEvent.ACTION_CANCEL, x, HEIGHT / 2, 0);
+            mUps[i] = MotionEvent.obtain(0, 0, MotionEvent.ACTION_UP, x, HEIGHT / 2, 0);
+        }
+    }
+
+    /**
+     * Recycle the touch events.
+     */
+    @After
+    public void tearDown() {
+        for (int i = 0; i < TAB_COUNT; ++i) {
+            mDowns[i].recycle();
+            mCancels[i].recycle();
+            mUps[i].recycle();
+        }
+    }
+
+    @Test
+    public void pressAndCancelDoNotAllocate() {
+        for (int i = 0; i < WARM_UP; ++i) {
+            pressAndCancel(i % TAB_COUNT);
+        }
+        AllocationTracker tracker = AllocationTracker.start();
+        for (int i = 0; i < REPEAT; ++i) {
+            pressAndCancel(i % TAB_COUNT);
+        }
+        assertNoAllocation(tracker);
+    }
+
+    @Test
+    public void pressAndReleaseDoNotAllocate() {
+        // Released on the current tab, the page does not change
+        mMenuView.setCurrentPage(2, false);
+        for (int i = 0; i < WARM_UP; ++i) {
+            pressAndRelease(2);
+        }
+        AllocationTracker tracker = AllocationTracker.start();
+        for (int i = 0; i < REPEAT; ++i) {
+            pressAndRelease(2);
+        }
+        assertNoAllocation(tracker);
+    }
+
+    @Test
+    public void pressRedrawsOnlyThePressedTab() {
+        for (int i = 0; i < WARM_UP; ++i) {
+            pressAndCancel(i % TAB_COUNT);
+        }
+        for (int tab = 0; tab < TAB_COUNT; ++tab) {
+            mMenuView.resetInvalidateCounts();
+            mMenuView.dispatchTouchEvent(mDowns[tab]);
+            assertEquals(0, mMenuView.mFullInvalidateCount);
+            assertTrue("Invalidated " + mMenuView.mInvalidateCount + " times",
+                    mMenuView.mInvalidateCount >= 1 && mMenuView.mInvalidateCount <= 2);
+            assertTrue("Dirty " + mMenuView.mLastDirty + " outside of tab " + tab,
+                    mMenuView.mLastDirty.left >= tab * TAB_WIDTH - 1
+                            && mMenuView.mLastDirty.right <= (tab + 1) * TAB_WIDTH + 1);
+            mMenuView.dispatchTouchEvent(mCancels[tab]);
+        }
+    }
+
+    /**
+     * The ripples allocate their own animations, which are not counted: the menu must not
+     * allocate around them while they are pressed, animated and released.
+     */
+    @Test
+    public void ripplePressAndCancelDoNotAllocate() {
+        mMenuView.setTabBackground(
+                new RippleDrawable(ColorStateList.valueOf(Color.GRAY), null, null));
+        mMenuView.drawFrame(mCanvas);
+        for (int i = 0; i < WARM_UP; ++i) {
+            pressAndCancel(i % TAB_COUNT);
+            advanceFrames(RIPPLE_FRAMES);
+        }
+        AllocationTracker tracker = AllocationTracker.start();
+        for (int i = 0; i < REPEAT; ++i) {
+            pressAndCancel(i % TAB_COUNT);
+            advanceFrames(RIPPLE_FRAMES);
+        }
+        assertNoAllocation(tracker);
+    }
+
+    private void pressAndCancel(int tab) {
+        mMenuView.dispatchTouchEvent(mDowns[tab]);
+        mMenuView.drawFrame(mCanvas);
+        mMenuView.dispatchTouchEvent(mCancels[tab]);
+        mMenuView.drawFrame(mCanvas);
+    }
+
+    private void pressAndRelease(int tab) {
+        mMenuView.dispatchTouchEvent(mDowns[tab]);
+        mMenuView.drawFrame(mCanvas);
+        mMenuView.dispatchTouchEvent(mUps[tab]);
+        ShadowLooper.idleMainLooper();
+        mMenuView.drawFrame(mCanvas);
+    }
+
+    private void advanceFrames(int frames) {
+        for (int i = 0; i < frames; ++i) {
+            ShadowLooper.idleMainLooper(FRAME_MILLIS, TimeUnit.MILLISECONDS);
+            mMenuView.drawFrame(mCanvas);
+        }
+    }
+
+    /**
+     * Create a background drawn differently when its tab is selected.
+     *
+     * @return a new state list drawable
+     */
+    private static StateListDrawable createBackground() {
+        StateListDrawable background = new StateListDrawable();
+        background.addState(
+                new int[]{android.R.attr.state_selected}, new ColorDrawable(Color.GRAY));
+        background.addState(new int[0], new ColorDrawable(Color.TRANSPARENT));
+        return background;
+    }
+}
@@ -0,0 +1,82 @@
+package com.geronimostudios.bottommenuview;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Edit scripts computed by {@link ListDiff}, applied the way {@link BottomMenuView} applies
+ * them: the removals from the end, then the insertions from the start.
+ */
+public class ListDiffTest {
+
+    @Test
+    public void identicalListsHaveNoOperation() {
+        assertOperations(0, list("a", "b", "c"), list("a", "b", "c"));
+        assertOperations(0, list(), list());
+    }
+
+    @Test
+    public void insert() {
+        assertOperations(1, list("a", "c"), list("a", "b", "c"));
+        assertOperations(1, list("b", "c"), list("a", "b", "c"));
+        assertOperations(1, list("a", "b"), list("a", "b", "c"));
+        assertOperations(3, list(), list("a", "b", "c"));
+    }
+
+    @Test
+    public void remove() {
+        assertOperations(1, list("a", "b", "c"), list("a", "c"));
+        assertOperations(1, list("a", "b", "c"), list("b", "c"));
+        assertOperations(1, list("a", "b", "c"), list("a", "b"));
+        assertOperations(3, list("a", "b", "c"), list());
+    }
+
+    @Test
+    public void move() {
+        // A moved item is removed then inserted, the others are kept
+        assertOperations(2, list("a", "b", "c", "d"), list("b", "c", "d", "a"));
+        assertOperations(2, list("a", "b", "c", "d"), list("a", "d", "b", "c"));
+        assertOperations(2, list("a", "b"), list("b", "a"));
+    }
+
+    @Test
+    public void replace() {
+        assertOperations(2, list("a", "b", "c"), list("a", "x", "c"));
+        assertOperations(5, list("a", "b", "c"), list("a", "x", "y", "z"));
+    }
+
+    /**
+     * Apply the edit script from a list to another and check the result and its length.
+     */
+    private static void assertOperations(int expected, List<String> from, List<String> to) {
+        boolean[] keptFrom = new boolean[from.size()];
+        boolean[] keptTo = new boolean[to.size()];
+        ListDiff.computeCommon(from, to, keptFrom, keptTo);
+
+        List<String> result = new ArrayList<>(from);
+        int operations = 0;
+        for (int i = keptFrom.length - 1; i >= 0; --i) {
+            if (!keptFrom[i]) {
+                result.remove(i);
+                ++operations;
+            }
+        }
+        for (int i = 0; i < keptTo.length; ++i) {
+            if (!keptTo[i]) {
+                result.add(i, to.get(i));
+                ++operations;
+            }
+        }
+        assertEquals(to, result);
+        assertEquals(expected, operations);
+    }
+
+    private static List<String> list(String... items) {
+        return Arrays.asList(items);
+    }
+}
@@ -0,0 +1,130 @@
+package com.geronimostudios.bottommenuview;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Edges, hit testing and underline positions of {@link MenuGeometry}.
+ */
+public class MenuGeometryTest {
+
+    private final MenuGeometry mGeometry = new MenuGeometry();
+
+    @Test
+    public void edgesFollowTheWeights() {
+        layout(400, 1f, 2f, 1f);
+
+        assertEquals(0, mGeometry.getTabLeft(0));
+        assertEquals(100, mGeometry.getTabRight(0));
+        assertEquals(100, mGeometry.getTabLeft(1));
+        assertEquals(300, mGeometry.getTabRight(1));
+        assertEquals(200, mGeometry.getTabWidth(1));
+        assertEquals(400, mGeometry.getTabRight(2));
+        assertEquals(0, mGeometry.getMaxScroll());
+    }
+
+    @Test
+    public void tabBoundariesBelongToTheTabStartingThere() {
+        layout(300, 1f, 1f, 1f);
+
+        assertEquals(0, mGeometry.getTabIndexAt(0));
+        assertEquals(0, mGeometry.getTabIndexAt(99));
+        assertEquals(1, mGeometry.getTabIndexAt(100));
+        assertEquals(1, mGeometry.getTabIndexAt(199));
+        assertEquals(2, mGeometry.getTabIndexAt(200));
+        assertEquals(2, mGeometry.getTabIndexAt(299));
+    }
+
+    @Test
+    public void positionsOutsideOfTheTabsAreClamped() {
+        layout(300, 1f, 1f, 1f);
+
+        assertEquals(0, mGeometry.getTabIndexAt(-1));
+        assertEquals(0, mGeometry.getTabIndexAt(Integer.MIN_VALUE));
+        assertEquals(2, mGeometry.getTabIndexAt(300));
+        assertEquals(2, mGeometry.getTabIndexAt(Integer.MAX_VALUE));
+
+        assertEquals(50f, mGeometry.getUnderlineCenterX(-1, 0f), 0f);
+        assertEquals(250f, mGeometry.getUnderlineCenterX(5, 0.5f), 0f);
+        assertEquals(0f, mGeometry.getScrollPosition(-10f), 0f);
+        assertEquals(2f, mGeometry.getScrollPosition(1000f), 0f);
+    }
+
+    @Test
+    public void emptyTabsAreNeverHit() {
+        layout(300, 1f, 0f, 0f, 1f);
+
+        assertEquals(0, mGeometry.getTabWidth(1));
+        assertEquals(0, mGeometry.getTabWidth(2));
+        assertEquals(0, mGeometry.getTabIndexAt(149));
+        assertEquals(3, mGeometry.getTabIndexAt(150));
+        assertEquals(3, mGeometry.getTabIndexAt(299));
+    }
+
+    @Test
+    public void minimumTabWidthIgnoresTheEmptyTabs() {
+        mGeometry.layout(new float[] {1f, 0f, 1f}, 3, 300, 200f);
+
+        // Without the empty tab, the two other tabs would be 200 pixels wide
+        assertEquals(150, mGeometry.getTabWidth(0));
+        assertEquals(0, mGeometry.getMaxScroll());
+    }
+
+    @Test
+    public void singleTab() {
+        layout(300, 2f);
+
+        assertEquals(300, mGeometry.getTabWidth(0));
+        assertEquals(0, mGeometry.getTabIndexAt(-5));
+        assertEquals(0, mGeometry.getTabIndexAt(150));
+        assertEquals(0, mGeometry.getTabIndexAt(305));
+        assertEquals(0, mGeometry.getFirstVisibleTab(0));
+        assertEquals(0, mGeometry.getLastVisibleTab(0, 300));
+        assertEquals(150f, mGeometry.getUnderlineCenterX(0, 0.5f), 0f);
+        assertEquals(300f, mGeometry.getUnderlineWidth(MenuGeometry.LINE_FULL_WIDTH, 0f, 0, 0.5f),
+                0f);
+        assertEquals(0f, mGeometry.getScrollPosition(150f), 0f);
+        assertEquals(0, mGeometry.getStripScroll(0, 0f, 300));
+    }
+
+    @Test
+    public void noTab() {
+        layout(300);
+
+        assertEquals(-1, mGeometry.getTabIndexAt(0));
+        assertEquals(0f, mGeometry.getScrollPosition(10f), 0f);
+        assertEquals(0f, mGeometry.getUnderlineWidth(MenuGeometry.LINE_FULL_WIDTH, 0f, 0, 0f), 0f);
+    }
+
+    @Test
+    public void underlineMovesBetweenTheCenters() {
+        layout(400, 1f, 3f);
+
+        assertEquals(50f, mGeometry.getUnderlineCenterX(0, 0f), 0f);
+        assertEquals(150f, mGeometry.getUnderlineCenterX(0, 0.5f), 0f);
+        assertEquals(250f, mGeometry.getUnderlineCenterX(1, 0f), 0f);
+        assertEquals(200f, mGeometry.getUnderlineWidth(MenuGeometry.LINE_FULL_WIDTH, 0f, 0, 0.5f),
+                0f);
+
+        // getScrollPosition() is the inverse
+        assertEquals(0.5f, mGeometry.getScrollPosition(150f), 0f);
+        assertEquals(1f, mGeometry.getScrollPosition(250f), 0f);
+    }
+
+    @Test
+    public void scrollableStripKeepsTheUnderlineCentered() {
+        mGeometry.layout(new float[] {1f, 1f, 1f, 1f, 1f}, 5, 300, 100f);
+
+        assertEquals(200, mGeometry.getMaxScroll());
+        assertEquals(0, mGeometry.getStripScroll(0, 0f, 300));
+        assertEquals(100, mGeometry.getStripScroll(2, 0f, 300));
+        assertEquals(200, mGeometry.getStripScroll(4, 0f, 300));
+        assertEquals(1, mGeometry.getFirstVisibleTab(100));
+        assertEquals(3, mGeometry.getLastVisibleTab(100, 300));
+    }
+
+    private void layout(int width, float... weights) {
+        mGeometry.layout(weights, weights.length, width, 0f);
+    }
+}
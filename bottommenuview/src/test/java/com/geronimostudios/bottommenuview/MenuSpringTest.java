@@ -0,0 +1,118 @@
+package com.geronimostudios.bottommenuview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Motion of {@link MenuSpring}: independent of the frame rate, continuous when retargeted, and
+ * without overshoot from a damping ratio of 1.
+ */
+public class MenuSpringTest {
+
+    private static final float STIFFNESS = 400f;
+    private static final float[] DAMPING_RATIOS = {0.5f, 1f, 2f};
+    private static final double FRAME_SECONDS = 1 / 60.0;
+
+    /**
+     * Steps before a spring must be at rest.
+     */
+    private static final int MAX_FRAMES = 600;
+
+    private static final float EPSILON = 1e-5f;
+
+    @Test
+    public void oneLongStepLandsWhereTwoShortStepsLand() {
+        for (float dampingRatio : DAMPING_RATIOS) {
+            MenuSpring once = createSpring(dampingRatio, 0f, 3f);
+            MenuSpring twice = createSpring(dampingRatio, 0f, 3f);
+            once.setVelocity(-2f);
+            twice.setVelocity(-2f);
+
+            once.step(0.033);
+            twice.step(0.0165);
+            twice.step(0.0165);
+
+            String message = "Damping ratio " + dampingRatio;
+            assertEquals(message, twice.getPosition(), once.getPosition(), EPSILON);
+            assertEquals(message, twice.getVelocity(), once.getVelocity(), EPSILON);
+        }
+    }
+
+    @Test
+    public void retargetKeepsThePositionAndTheVelocity() {
+        for (float dampingRatio : DAMPING_RATIOS) {
+            MenuSpring spring = createSpring(dampingRatio, 0f, 2f);
+            for (int i = 0; i < 5; ++i) {
+                spring.step(FRAME_SECONDS);
+            }
+            float position = spring.getPosition();
+            float velocity = spring.getVelocity();
+            assertTrue(velocity > 0f);
+
+            spring.setTarget(0f);
+
+            String message = "Damping ratio " + dampingRatio;
+            assertEquals(message, position, spring.getPosition(), 0f);
+            assertEquals(message, velocity, spring.getVelocity(), 0f);
+            // The motion goes on toward the old target before turning back
+            spring.step(0.001);
+            assertTrue(message, spring.getPosition() > position);
+        }
+    }
+
+    @Test
+    public void criticallyAndOverDampedSpringsDoNotOvershoot() {
+        for (float dampingRatio : new float[] {1f, 1.5f, 3f}) {
+            MenuSpring spring = createSpring(dampingRatio, 0f, 1f);
+            assertSettlesWithoutOvershoot(spring, 1f);
+
+            // Moving backward as well
+            spring.setTarget(-2f);
+            assertSettlesWithoutOvershoot(spring, -2f);
+        }
+    }
+
+    @Test
+    public void underDampedSpringOvershootsAndSettles() {
+        MenuSpring spring = createSpring(0.3f, 0f, 1f);
+        float max = 0f;
+        boolean atRest = false;
+        for (int i = 0; i < MAX_FRAMES && !atRest; ++i) {
+            atRest = spring.step(FRAME_SECONDS);
+            max = Math.max(max, spring.getPosition());
+        }
+        assertTrue(atRest);
+        assertTrue("Max position " + max, max > 1f);
+        assertEquals(1f, spring.getPosition(), 0f);
+    }
+
+    @Test
+    public void stepWithoutElapsedTimeDoesNotMove() {
+        MenuSpring spring = createSpring(1f, 0f, 1f);
+        assertFalse(spring.step(0));
+        assertEquals(0f, spring.getPosition(), 0f);
+    }
+
+    private static MenuSpring createSpring(float dampingRatio, float position, float target) {
+        MenuSpring spring = new MenuSpring(STIFFNESS, dampingRatio);
+        spring.setPosition(position);
+        spring.setTarget(target);
+        return spring;
+    }
+
+    private static void assertSettlesWithoutOvershoot(MenuSpring spring, float target) {
+        float start = spring.getPosition();
+        float direction = Math.signum(target - start);
+        boolean atRest = false;
+        for (int i = 0; i < MAX_FRAMES && !atRest; ++i) {
+            atRest = spring.step(FRAME_SECONDS);
+            float past = (spring.getPosition() - target) * direction;
+            assertTrue("Overshoot of " + past + " toward " + target, past <= EPSILON);
+        }
+        assertTrue("Not at rest on " + target, atRest);
+        assertEquals(target, spring.getPosition(), 0f);
+    }
+}
@@ -0,0 +1,53 @@
+package com.geronimostudios.bottommenuview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/**
+ * {@link BottomMenuView} counting its invalidations and keeping the last dirty rectangle.
+ */
+public class TestMenuView extends BottomMenuView {
+
+    int mInvalidateCount;
+    int mFullInvalidateCount;
+    final Rect mLastDirty = new Rect();
+
+    public TestMenuView(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void invalidate() {
+        ++mInvalidateCount;
+        ++mFullInvalidateCount;
+        super.invalidate();
+    }
+
+    @Override
+    public void invalidate(Rect dirty) {
+        ++mInvalidateCount;
+        mLastDirty.set(dirty);
+        super.invalidate(dirty);
+    }
+
+    @Override
+    public void invalidate(int l, int t, int r, int b) {
+        ++mInvalidateCount;
+        mLastDirty.set(l, t, r, b);
+        super.invalidate(l, t, r, b);
+    }
+
+    void resetInvalidateCounts() {
+        mInvalidateCount = 0;
+        mFullInvalidateCount = 0;
+        mLastDirty.setEmpty();
+    }
+
+    /**
+     * Draw a frame, as the view hierarchy would.
+     */
+    void drawFrame(Canvas canvas) {
+        onDraw(canvas);
+    }
+}
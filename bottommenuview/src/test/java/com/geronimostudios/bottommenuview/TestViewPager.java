@@ -0,0 +1,83 @@
+package com.geronimostudios.bottommenuview;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ViewPager} exposing its listeners, to drive the scroll callbacks without dragging.
+ */
+public class TestViewPager extends ViewPager {
+
+    final List<OnPageChangeListener> mPageChangeListeners = new ArrayList<>();
+
+    public TestViewPager(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void addOnPageChangeListener(@NonNull OnPageChangeListener listener) {
+        mPageChangeListeners.add(listener);
+        super.addOnPageChangeListener(listener);
+    }
+
+    @Override
+    public void removeOnPageChangeListener(@NonNull OnPageChangeListener listener) {
+        mPageChangeListeners.remove(listener);
+        super.removeOnPageChangeListener(listener);
+    }
+
+    void dispatchPageScrolled(int position, float positionOffset) {
+        for (int i = 0; i < mPageChangeListeners.size(); ++i) {
+            mPageChangeListeners.get(i).onPageScrolled(position, positionOffset, 0);
+        }
+    }
+
+    void dispatchPageSelected(int position) {
+        for (int i = 0; i < mPageChangeListeners.size(); ++i) {
+            mPageChangeListeners.get(i).onPageSelected(position);
+        }
+    }
+
+    /**
+     * Pager adapter of empty pages, with an icon per page.
+     */
+    static class IconAdapter extends PagerAdapter implements BottomMenuView.Adapter {
+
+        private final int mCount;
+
+        IconAdapter(int count) {
+            mCount = count;
+        }
+
+        @Override
+        public int getMenuIcon(int position) {
+            return android.R.drawable.ic_menu_add;
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return false;
+        }
+
+        @Override
+        public Object instantiateItem(ViewGroup container, int position) {
+            return position;
+        }
+
+        @Override
+        public void destroyItem(ViewGroup container, int position, Object object) {
+        }
+    }
+}